@@ -1,9 +1,14 @@
 package com.passkind.backend;
 
+import com.passkind.backend.config.NativeImageHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
+@ImportRuntimeHints(NativeImageHints.class)
 public class PassKindBackendApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,74 @@
+package com.passkind.backend.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Replaces Boot's pool auto-configuration. Whether replicas are used is decided when the beans are created,
+// not by a condition, so the bean graph stays the same under Spring AOT (which fixes conditions at build time).
+@Configuration
+public class DataSourceConfig {
+
+    // Same spring.datasource.* settings (including hikari tuning) that auto-configuration would apply
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReadWriteRoutingDataSource routingDataSource(HikariDataSource primaryDataSource, MeterRegistry meterRegistry,
+            @Value("${app.datasource.replica.urls:}") String replicaUrls,
+            @Value("${app.datasource.replica.username:}") String replicaUsername,
+            @Value("${app.datasource.replica.password:}") String replicaPassword,
+            @Value("${app.datasource.replica.pool-size:0}") int replicaPoolSize,
+            @Value("${app.datasource.sticky-window-ms:5000}") long stickyWindowMillis) {
+        List<HikariDataSource> replicas = new ArrayList<>();
+        String poolName = primaryDataSource.getPoolName() != null ? primaryDataSource.getPoolName() : "passkind-pool";
+        int index = 0;
+        for (String url : StringUtils.commaDelimitedListToStringArray(replicaUrls)) {
+            // Replicas inherit the primary's pool and driver tuning
+            HikariConfig config = new HikariConfig();
+            primaryDataSource.copyStateTo(config);
+            config.setJdbcUrl(url.trim());
+            config.setPoolName(poolName + "-replica-" + index++);
+            config.setReadOnly(true);
+            if (StringUtils.hasText(replicaUsername)) {
+                config.setUsername(replicaUsername);
+                config.setPassword(replicaPassword);
+            }
+            if (replicaPoolSize > 0) {
+                config.setMaximumPoolSize(replicaPoolSize);
+                config.setMinimumIdle(replicaPoolSize);
+            }
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.add(new HikariDataSource(config));
+        }
+        return new ReadWriteRoutingDataSource(primaryDataSource, replicas, Duration.ofMillis(stickyWindowMillis),
+                meterRegistry);
+    }
+
+    // Without replicas the primary pool is used directly
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReadWriteRoutingDataSource routingDataSource) {
+        if (!routingDataSource.hasReplicas()) {
+            return primaryDataSource;
+        }
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
@@ -0,0 +1,16 @@
+package com.passkind.backend.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JacksonConfig {
+
+    // Replaces reflective getter calls on the Lombok DTOs with generated lambdas; Boot registers any Module bean
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
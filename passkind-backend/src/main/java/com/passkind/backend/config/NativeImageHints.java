@@ -0,0 +1,84 @@
+package com.passkind.backend.config;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+
+// Reflection and resource hints for the native image (-Pnative). Only evaluated at build time by Spring AOT.
+// jjwt instantiates its implementation classes by name and finds the Jackson serializer through ServiceLoader;
+// the Excel export relies on POI's encryption builders (loaded by name) and on XMLBeans, which loads compiled
+// schema (.xsb) files and instantiates the generated OOXML types reflectively.
+public class NativeImageHints implements RuntimeHintsRegistrar {
+
+    private static final List<String> JJWT_TYPES = List.of(
+            "io.jsonwebtoken.impl.DefaultJwtBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtParserBuilder",
+            "io.jsonwebtoken.impl.DefaultJwtParser",
+            "io.jsonwebtoken.impl.DefaultClaims",
+            "io.jsonwebtoken.impl.DefaultHeader",
+            "io.jsonwebtoken.impl.DefaultJwsHeader",
+            "io.jsonwebtoken.jackson.io.JacksonSerializer",
+            "io.jsonwebtoken.jackson.io.JacksonDeserializer");
+
+    private static final List<String> POI_ENCRYPTION_BUILDERS = List.of(
+            "org.apache.poi.poifs.crypt.binaryrc4.BinaryRC4EncryptionInfoBuilder",
+            "org.apache.poi.poifs.crypt.cryptoapi.CryptoAPIEncryptionInfoBuilder",
+            "org.apache.poi.poifs.crypt.standard.StandardEncryptionInfoBuilder",
+            "org.apache.poi.poifs.crypt.agile.AgileEncryptionInfoBuilder");
+
+    // Generated schema types shipped in poi-ooxml-lite
+    private static final List<String> XMLBEANS_PACKAGES = List.of(
+            "org/openxmlformats/schemas",
+            "com/microsoft/schemas",
+            "org/apache/poi/schemas");
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (String type : JJWT_TYPES) {
+            hints.reflection().registerType(TypeReference.of(type), MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                    MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+        hints.resources().registerPattern("META-INF/services/io.jsonwebtoken.io.*");
+
+        for (String type : POI_ENCRYPTION_BUILDERS) {
+            hints.reflection().registerType(TypeReference.of(type), MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+        }
+        hints.resources().registerPattern("org/apache/poi/schemas/ooxml/*");
+        hints.resources().registerPattern("META-INF/services/org.apache.poi.*");
+
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(classLoader);
+        for (String pkg : XMLBEANS_PACKAGES) {
+            for (String className : classesUnder(resolver, pkg)) {
+                hints.reflection().registerType(TypeReference.of(className),
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.DECLARED_FIELDS);
+            }
+        }
+    }
+
+    private static List<String> classesUnder(PathMatchingResourcePatternResolver resolver, String pkg) {
+        try {
+            Resource[] resources = resolver.getResources("classpath*:" + pkg + "/**/*.class");
+            return Arrays.stream(resources)
+                    .map(resource -> {
+                        try {
+                            String url = resource.getURL().toString();
+                            String path = url.substring(url.indexOf(pkg), url.length() - ".class".length());
+                            return path.replace('/', '.');
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
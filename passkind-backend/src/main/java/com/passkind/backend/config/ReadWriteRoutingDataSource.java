@@ -0,0 +1,179 @@
+package com.passkind.backend.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Sends read-only transactions to the replicas (round-robin) and everything else to the primary.
+// Must sit behind a LazyConnectionDataSourceProxy: the read-only flag is only set after the transaction
+// manager has asked for its connection, so routing has to wait for the first statement.
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+    // Connection and Statement methods that are handed the SQL to run
+    private static final Set<String> SQL_METHODS = Set.of("prepareStatement", "prepareCall", "execute",
+            "executeQuery", "executeUpdate", "executeLargeUpdate", "addBatch");
+
+    private final DataSource primary;
+    private final List<HikariDataSource> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+    // Users who committed a write within the sticky window read from the primary (read-your-writes)
+    private final Cache<String, Boolean> recentWriters;
+    private final Counter primaryRoutes;
+    private final Counter replicaRoutes;
+    private final Counter stickyRoutes;
+    private final Counter fallbackRoutes;
+    private volatile Consumer<String> writerListener = username -> {
+    };
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<HikariDataSource> replicas, Duration stickyWindow,
+            MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.recentWriters = Caffeine.newBuilder().expireAfterWrite(stickyWindow).build();
+        this.primaryRoutes = routeCounter(meterRegistry, "primary");
+        this.replicaRoutes = routeCounter(meterRegistry, "replica");
+        this.stickyRoutes = routeCounter(meterRegistry, "sticky");
+        this.fallbackRoutes = routeCounter(meterRegistry, "fallback");
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryRoutes.increment();
+            return trackWrites(primary.getConnection());
+        }
+
+        String username = currentUsername();
+        if (username != null && recentWriters.getIfPresent(username) != null) {
+            stickyRoutes.increment();
+            return primary.getConnection();
+        }
+
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            HikariDataSource replica = replicas.get((start + i) % replicas.size());
+            try {
+                Connection connection = replica.getConnection();
+                replicaRoutes.increment();
+                return connection;
+            } catch (SQLException e) {
+                logger.warn("Replica {} unavailable, trying next: {}", replica.getPoolName(), e.getMessage());
+            }
+        }
+        fallbackRoutes.increment();
+        return primary.getConnection();
+    }
+
+    // Called with the username after each committed write, e.g. to tell other nodes about it
+    public void onWriterCommitted(Consumer<String> listener) {
+        this.writerListener = listener;
+    }
+
+    // A write committed elsewhere (another node) by this user
+    public void markRecentWriter(String username) {
+        recentWriters.put(username, Boolean.TRUE);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("Routing uses the pools' configured credentials");
+    }
+
+    @Override
+    public void destroy() {
+        replicas.forEach(HikariDataSource::close);
+    }
+
+    // Within a user's transaction, the user becomes a recent writer once it commits, but only if a statement
+    // other than a SELECT went through the connection: a transaction that merely was not read-only must not
+    // pin the user's reads to the primary.
+    private Connection trackWrites(Connection connection) {
+        String username = currentUsername();
+        if (username == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return connection;
+        }
+        AtomicBoolean wrote = new AtomicBoolean();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (wrote.get()) {
+                    recentWriters.put(username, Boolean.TRUE);
+                    writerListener.accept(username);
+                }
+            }
+        });
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, watching(connection, wrote));
+    }
+
+    // Flags the SQL passed to prepare/execute calls, and that of statements created from a watched connection
+    private static InvocationHandler watching(Object target, AtomicBoolean wrote) {
+        return (proxy, method, args) -> {
+            if (SQL_METHODS.contains(method.getName()) && args != null && args.length > 0
+                    && args[0] instanceof String sql && !isSelect(sql)) {
+                wrote.set(true);
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement statement && method.getReturnType().isInterface()) {
+                return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] {
+                        method.getReturnType() }, watching(statement, wrote));
+            }
+            return result;
+        };
+    }
+
+    // Anything else (including WITH, which may wrap a DELETE or UPDATE) counts as a write
+    private static boolean isSelect(String sql) {
+        return sql.stripLeading().toLowerCase(Locale.ROOT).startsWith("select");
+    }
+
+    private static String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    private static Counter routeCounter(MeterRegistry meterRegistry, String target) {
+        return Counter.builder("passkind.datasource.routes").tag("target", target)
+                .description("Connections handed out by the read/write routing DataSource")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,46 @@
+package com.passkind.backend.controller;
+
+import com.passkind.backend.dto.AuditActivityResponse;
+import com.passkind.backend.dto.AuditPageResponse;
+import com.passkind.backend.service.AuditService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping({ "/api/audit", "/audit" })
+public class AuditController {
+
+    private final AuditService auditService;
+
+    public AuditController(AuditService auditService) {
+        this.auditService = auditService;
+    }
+
+    // The current user's audit trail, newest first; `from` is inclusive, `to` exclusive
+    @GetMapping
+    public ResponseEntity<AuditPageResponse> getAuditTrail(
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) String resourceType,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(auditService.getMyAuditTrail(action, resourceType, from, to, cursor, limit));
+    }
+
+    // Daily counts per action and resource type (defaults to the last 30 days); refreshed every few minutes
+    @GetMapping("/activity")
+    public ResponseEntity<List<AuditActivityResponse>> getActivity(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(auditService.getMyActivity(from, to));
+    }
+}
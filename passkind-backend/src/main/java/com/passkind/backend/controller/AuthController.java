@@ -12,6 +12,8 @@ import com.passkind.backend.exception.UnauthorizedException;
 import com.passkind.backend.repository.UserRepository;
 import com.passkind.backend.security.JwtTokenProvider;
 import com.passkind.backend.service.OTPService;
+import com.passkind.backend.service.RefreshTokenService;
+import com.passkind.backend.service.TokenDenylistService;
 import com.passkind.backend.service.UserService;
 import jakarta.validation.Valid;
 import lombok.Data;
@@ -24,6 +26,7 @@ import org.springframework.security.core.Authentication;
 
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -40,6 +43,8 @@ public class AuthController {
     private final JwtTokenProvider tokenProvider;
     private final OTPService otpService;
     private final UserService userService;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenDenylistService tokenDenylistService;
 
     @PostMapping("/register")
     public ResponseEntity<?> register(@Valid @RequestBody RegisterRequest request) {
@@ -66,7 +71,7 @@ public class AuthController {
                 java.util.Collections.emptyList());
         String token = tokenProvider.generateToken(authentication);
 
-        return ResponseEntity.ok(new AuthResponse(token, "Bearer"));
+        return ResponseEntity.ok(new AuthResponse(token, "Bearer", refreshTokenService.issue(user)));
     }
 
     @PostMapping("/resend-otp")
@@ -140,13 +145,43 @@ public class AuthController {
             userService.handleSuccessfulLogin(user.getUsername());
 
             String token = tokenProvider.generateToken(authentication);
-            return ResponseEntity.ok(new AuthResponse(token, "Bearer"));
+            return ResponseEntity.ok(new AuthResponse(token, "Bearer", refreshTokenService.issue(user)));
         } catch (BadCredentialsException e) {
             userService.handleFailedLogin(user.getUsername());
             throw new UnauthorizedException("Invalid username or password");
         }
     }
 
+    // Trades a refresh token for a new access token and the next refresh token; no password check
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthResponse> refresh(@RequestBody RefreshRequest request) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(request.getRefreshToken());
+        return ResponseEntity.ok(new AuthResponse(tokenProvider.generateToken(rotation.username()), "Bearer",
+                rotation.refreshToken()));
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestBody(required = false) RefreshRequest request,
+            @RequestHeader(value = "Authorization", required = false) String authorization) {
+        // Either credential may be missing (e.g. a session from before refresh tokens); revoke what was sent
+        if (request != null) {
+            refreshTokenService.revoke(request.getRefreshToken());
+        }
+        // The access token would otherwise stay usable until it expires
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            io.jsonwebtoken.Claims claims = tokenProvider.parseClaims(authorization.substring(7));
+            if (claims != null) {
+                tokenDenylistService.revokeToken(claims.getId(), claims.getExpiration());
+            }
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @Data
+    public static class RefreshRequest {
+        private String refreshToken;
+    }
+
     @Data
     public static class AuthRequest {
         private String username;
@@ -157,6 +192,7 @@ public class AuthController {
     public static class AuthResponse {
         private String accessToken;
         private String tokenType = "Bearer";
+        private String refreshToken;
 
         public AuthResponse(String accessToken) {
             this.accessToken = accessToken;
@@ -166,5 +202,11 @@ public class AuthController {
             this.accessToken = accessToken;
             this.tokenType = tokenType;
         }
+
+        public AuthResponse(String accessToken, String tokenType, String refreshToken) {
+            this.accessToken = accessToken;
+            this.tokenType = tokenType;
+            this.refreshToken = refreshToken;
+        }
     }
 }
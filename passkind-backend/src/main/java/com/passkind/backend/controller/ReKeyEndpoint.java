@@ -0,0 +1,31 @@
+package com.passkind.backend.controller;
+
+import com.passkind.backend.dto.ReKeyProgress;
+import com.passkind.backend.service.ReKeyService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+// Operator trigger for key rotation, served on the internal management port: GET/POST /actuator/rekey
+@Component
+@Endpoint(id = "rekey")
+public class ReKeyEndpoint {
+
+    private final ReKeyService reKeyService;
+
+    public ReKeyEndpoint(ReKeyService reKeyService) {
+        this.reKeyService = reKeyService;
+    }
+
+    @ReadOperation
+    public ReKeyProgress progress() {
+        return reKeyService.progress();
+    }
+
+    @WriteOperation
+    public ReKeyProgress start(@Nullable Boolean rotateDataKeys) {
+        return reKeyService.start(Boolean.TRUE.equals(rotateDataKeys));
+    }
+}
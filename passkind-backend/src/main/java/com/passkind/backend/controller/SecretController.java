@@ -1,37 +1,74 @@
 package com.passkind.backend.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.passkind.backend.dto.ExportJobResponse;
 import com.passkind.backend.entity.Secret;
+import com.passkind.backend.exception.BadRequestException;
+import com.passkind.backend.metrics.ExportMetrics;
+import com.passkind.backend.service.BreachCheckService;
+import com.passkind.backend.service.ExportJobService;
 import com.passkind.backend.service.SecretService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 @RestController
 @RequestMapping({ "/api/secrets", "/secrets" })
 public class SecretController {
 
+    private static final Logger logger = LoggerFactory.getLogger(SecretController.class);
+
     private final SecretService secretService;
+    private final ExportMetrics exportMetrics;
+    private final ExportJobService exportJobService;
+    private final BreachCheckService breachCheckService;
+    private final ObjectWriter secretResponseWriter;
+    private final ObjectWriter secretExportWriter;
 
-    public SecretController(SecretService secretService) {
+    public SecretController(SecretService secretService, ExportMetrics exportMetrics,
+            ExportJobService exportJobService, BreachCheckService breachCheckService, ObjectMapper objectMapper) {
         this.secretService = secretService;
+        this.exportMetrics = exportMetrics;
+        this.exportJobService = exportJobService;
+        this.breachCheckService = breachCheckService;
+        // Typed writers stream the array straight to the response, so no serialized copy of it is built per request
+        this.secretResponseWriter = objectMapper.writerFor(objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, SecretResponse.class));
+        this.secretExportWriter = objectMapper.writerFor(objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, SecretExportResponse.class));
     }
 
     @PostMapping
     public ResponseEntity<SecretResponse> createSecret(@RequestBody SecretRequest request) throws Exception {
         Secret secret = secretService.createSecret(request.getName(), request.getValue(),
                 request.getMetadata(), request.getTags(), request.getEmail(), request.getUsername());
-        return ResponseEntity.ok(mapToResponse(secret));
+        return ResponseEntity.ok().eTag(eTag(secret)).body(withBreachCount(secret, request.getValue()));
     }
 
+    // With If-Match the update applies to that version: changes made since are merged field by field, and
+    // conflicting ones are refused with 412. Without it the update is unconditional.
     @PutMapping("/{id}")
     public ResponseEntity<SecretResponse> updateSecret(@PathVariable java.util.UUID id,
-            @RequestBody SecretRequest request) throws Exception {
+            @RequestBody SecretRequest request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws Exception {
         Secret secret = secretService.updateSecret(id, request.getName(), request.getValue(),
-                request.getMetadata(), request.getTags(), request.getEmail(), request.getUsername());
-        return ResponseEntity.ok(mapToResponse(secret));
+                request.getMetadata(), request.getTags(), request.getEmail(), request.getUsername(),
+                parseVersion(ifMatch));
+        return ResponseEntity.ok().eTag(eTag(secret)).body(withBreachCount(secret, request.getValue()));
     }
 
     @DeleteMapping("/{id}")
@@ -41,18 +78,33 @@ public class SecretController {
     }
 
     @GetMapping
-    public ResponseEntity<List<SecretResponse>> getSecrets() {
+    public void getSecrets(HttpServletResponse response) throws IOException {
         List<Secret> secrets = secretService.getMySecrets();
-        List<SecretResponse> responses = secrets.stream()
-                .map(this::mapToResponse)
-                .collect(java.util.stream.Collectors.toList());
-        return ResponseEntity.ok(responses);
+        writeJsonArray(response, secretResponseWriter,
+                secrets.stream().map(SecretController::mapToResponse).toList());
+    }
+
+    // ?tags=a&tags=b narrows to secrets carrying all of them
+    @GetMapping("/summary")
+    public ResponseEntity<List<com.passkind.backend.dto.SecretSummaryResponse>> getSecretSummaries(
+            @RequestParam(required = false) List<String> tags) {
+        return ResponseEntity.ok(secretService.getMySecretSummaries(tags));
+    }
+
+    // Owned and shared-with-me secrets, keyset-paginated; pass nextCursor back as ?cursor=.
+    // ?meta=key, ?meta=key=value and ?meta=key=prefix* narrow by metadata (all must match).
+    @GetMapping("/accessible")
+    public ResponseEntity<com.passkind.backend.dto.SecretPageResponse> getAccessibleSecrets(
+            @RequestParam(required = false) String cursor, @RequestParam(required = false) Integer limit,
+            @RequestParam org.springframework.util.MultiValueMap<String, String> params) {
+        // Read raw: a single List<String> parameter would be split on commas inside values
+        return ResponseEntity.ok(secretService.getAccessibleSecrets(cursor, limit, params.get("meta")));
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<SecretResponse> getSecret(@PathVariable java.util.UUID id) {
         Secret secret = secretService.getSecret(id);
-        return ResponseEntity.ok(mapToResponse(secret));
+        return ResponseEntity.ok().eTag(eTag(secret)).body(mapToResponse(secret));
     }
 
     @GetMapping("/{id}/value")
@@ -60,6 +112,34 @@ public class SecretController {
         return ResponseEntity.ok(secretService.getDecryptedValue(id));
     }
 
+    // Several secrets (or their values) in one round trip; ids the caller doesn't own are left out
+    @PostMapping("/batch-get")
+    public ResponseEntity<List<SecretResponse>> batchGetSecrets(@RequestBody BatchRequest request) {
+        List<Secret> secrets = secretService.getMySecrets(request.getIds());
+        return ResponseEntity.ok(secrets.stream().map(SecretController::mapToResponse).toList());
+    }
+
+    @PostMapping("/values")
+    public ResponseEntity<Map<java.util.UUID, String>> getSecretValues(@RequestBody BatchRequest request)
+            throws Exception {
+        return ResponseEntity.ok(secretService.getDecryptedValues(request.getIds()));
+    }
+
+    // Looks a candidate value up in the breach corpus, e.g. while it is being typed; nothing is stored
+    @PostMapping("/breach-check")
+    public ResponseEntity<BreachCheckResponse> checkBreach(@RequestBody BreachCheckRequest request) {
+        BreachCheckResponse response = new BreachCheckResponse();
+        response.setAvailable(breachCheckService.isAvailable());
+        Long count = breachCheckService.check(request.getValue());
+        response.setCount(count != null ? count : 0);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/breach-scan")
+    public ResponseEntity<com.passkind.backend.dto.BreachScanResponse> scanBreaches() throws Exception {
+        return ResponseEntity.ok(breachCheckService.scanMySecrets());
+    }
+
     @GetMapping("/{id}/history")
     public ResponseEntity<List<SecretHistoryResponse>> getSecretHistory(@PathVariable java.util.UUID id) {
         List<com.passkind.backend.entity.SecretHistory> history = secretService.getSecretHistory(id);
@@ -69,7 +149,7 @@ public class SecretController {
                     r.setId(h.getId());
                     r.setModifiedAt(h.getModifiedAt());
                     r.setChangeType(h.getChangeType());
-                    r.setPreviousData(h.getPreviousData());
+                    r.setPreviousData(secretService.readablePreviousData(h));
                     r.setModifiedBy(h.getModifiedBy().getUsername());
                     return r;
                 })
@@ -77,33 +157,31 @@ public class SecretController {
         return ResponseEntity.ok(response);
     }
 
-    @GetMapping("/export")
-    public ResponseEntity<List<SecretExportResponse>> exportSecrets() throws Exception {
-        List<Secret> secrets = secretService.getMySecrets();
-        List<SecretExportResponse> responses = new java.util.ArrayList<>();
+    @GetMapping("/{id}/shares")
+    public ResponseEntity<List<com.passkind.backend.dto.SecretShareResponse>> getShares(
+            @PathVariable java.util.UUID id) {
+        return ResponseEntity.ok(secretService.getShares(id));
+    }
 
-        for (Secret secret : secrets) {
-            try {
-                SecretExportResponse response = new SecretExportResponse();
-                response.setId(secret.getId());
-                response.setName(secret.getName());
-                response.setValue(secretService.getDecryptedValue(secret.getId()));
-                response.setMetadata(secret.getMetadata());
-                response.setTags(secret.getTags());
-                response.setEmail(secret.getEmail());
-                response.setUsername(secret.getUsername());
-                response.setCreatedAt(secret.getCreatedAt());
-                response.setUpdatedAt(secret.getUpdatedAt());
-                responses.add(response);
-            } catch (Exception e) {
-                // Log error but continue with other secrets
-                System.err.println("Failed to decrypt secret: " + secret.getId() + " - " + e.getMessage());
-                // Optionally, you could add the secret with a placeholder value
-                // or skip it entirely
-            }
-        }
+    @PostMapping("/{id}/shares")
+    public ResponseEntity<Void> shareSecret(@PathVariable java.util.UUID id, @RequestBody ShareRequest request) {
+        secretService.shareSecret(id, request.getUsername(), request.getPermission());
+        return ResponseEntity.noContent().build();
+    }
 
-        return ResponseEntity.ok(responses);
+    @DeleteMapping("/{id}/shares/{username}")
+    public ResponseEntity<Void> unshareSecret(@PathVariable java.util.UUID id, @PathVariable String username) {
+        secretService.unshareSecret(id, username);
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/export")
+    public void exportSecrets(HttpServletResponse response) throws IOException {
+        io.micrometer.core.instrument.Timer.Sample sample = exportMetrics.start();
+        List<Secret> secrets = secretService.getMySecrets();
+        writeJsonArray(response, secretExportWriter,
+                secrets.stream().map(this::mapToExport).filter(Objects::nonNull).toList());
+        exportMetrics.record("json", sample, secrets.size(), -1);
     }
 
     @PostMapping("/export/excel")
@@ -125,17 +203,167 @@ public class SecretController {
                 .body(excelBytes);
     }
 
-    private SecretResponse mapToResponse(Secret secret) {
+    // Exports as background jobs: submit, poll the job until COMPLETED, then download its file
+    @PostMapping("/export/jobs")
+    public ResponseEntity<ExportJobResponse> submitExportJob(@RequestBody ExportJobRequest request) {
+        String username = currentUsername();
+        String format = request.getFormat() != null ? request.getFormat().toLowerCase() : ExportJobService.EXCEL;
+        ExportJobService.Task task;
+        if (ExportJobService.EXCEL.equals(format)) {
+            String password = request.getPassword();
+            if (password == null || password.isEmpty()) {
+                throw new BadRequestException("Password is required");
+            }
+            // Checked now, so a wrong password fails the request rather than the job
+            secretService.verifyExportPassword(username, password);
+            task = (out, progress) -> secretService.writeSecretsAsExcel(username, password, out,
+                    progress::setTotal, progress::advance);
+        } else if (ExportJobService.JSON.equals(format)) {
+            task = (out, progress) -> {
+                List<Secret> secrets = secretService.getSecretsOwnedBy(username);
+                progress.setTotal(secrets.size());
+                secretExportWriter.writeValue(out, secrets.stream().map(secret -> {
+                    progress.advance();
+                    return mapToExport(secret);
+                }).filter(Objects::nonNull).toList());
+                return secrets.size();
+            };
+        } else {
+            throw new BadRequestException("Export format must be excel or json");
+        }
+        ExportJobResponse job = exportJobService.submit(username, format, task);
+        return ResponseEntity.accepted()
+                .location(org.springframework.web.servlet.support.ServletUriComponentsBuilder.fromCurrentRequest()
+                        .path("/{id}").buildAndExpand(job.getId()).toUri())
+                .body(job);
+    }
+
+    @GetMapping("/export/jobs/{id}")
+    public ResponseEntity<ExportJobResponse> getExportJob(@PathVariable java.util.UUID id) {
+        return ResponseEntity.ok(exportJobService.get(id, currentUsername()));
+    }
+
+    @DeleteMapping("/export/jobs/{id}")
+    public ResponseEntity<Void> deleteExportJob(@PathVariable java.util.UUID id) {
+        exportJobService.delete(id, currentUsername());
+        return ResponseEntity.noContent().build();
+    }
+
+    // Single byte ranges are honoured (resumed downloads); several ranges get the whole file
+    @GetMapping("/export/jobs/{id}/file")
+    public void downloadExport(@PathVariable java.util.UUID id,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            HttpServletResponse response) throws IOException {
+        ExportJobService.ExportFile file = exportJobService.openFile(id, currentUsername());
+        long size = file.getSize();
+        long start = 0;
+        long end = size - 1;
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // Octet-stream for JSON too: response compression applies to application/json and would break ranges
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(file.getFileName()).build().toString());
+        List<HttpRange> ranges = List.of();
+        if (range != null) {
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                // Malformed: ignored, as the whole file is a valid answer
+            }
+        }
+        if (ranges.size() == 1) {
+            start = ranges.get(0).getRangeStart(size);
+            end = ranges.get(0).getRangeEnd(size);
+            if (start >= size || start > end) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        }
+        response.setContentLengthLong(end - start + 1);
+        file.transferTo(start, end - start + 1, response.getOutputStream());
+    }
+
+    private static String currentUsername() {
+        return org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication()
+                .getName();
+    }
+
+    private static String eTag(Secret secret) {
+        return "\"" + secret.getVersion() + "\"";
+    }
+
+    // The version in an If-Match ETag ("3", also accepted weak or unquoted); null for "*" or no header
+    private static Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("If-Match must be a secret version ETag");
+        }
+    }
+
+    // Every element is mapped before the first byte goes out: once the response is committed, a failure could
+    // only end it early, and the client would get a 200 with truncated JSON
+    private void writeJsonArray(HttpServletResponse response, ObjectWriter writer, List<?> items)
+            throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        writer.writeValue(response.getOutputStream(), items);
+    }
+
+    private SecretExportResponse mapToExport(Secret secret) {
+        SecretExportResponse response = new SecretExportResponse();
+        try {
+            response.setValue(secretService.decryptValue(secret));
+        } catch (Exception e) {
+            // Log error but continue with other secrets
+            logger.error("Failed to decrypt secret: {} - {}", secret.getId(), e.getMessage());
+            return null;
+        }
+        response.setId(secret.getId());
+        response.setName(secret.getName());
+        response.setMetadata(secret.getMetadata());
+        response.setTags(secret.getTagNames());
+        response.setEmail(secret.getEmail());
+        response.setUsername(secret.getUsername());
+        response.setCreatedAt(secret.getCreatedAt());
+        response.setUpdatedAt(secret.getUpdatedAt());
+        return response;
+    }
+
+    private SecretResponse withBreachCount(Secret secret, String value) {
+        SecretResponse response = mapToResponse(secret);
+        response.setBreachCount(breachCheckService.check(value));
+        return response;
+    }
+
+    public static SecretResponse mapToResponse(Secret secret) {
         SecretResponse response = new SecretResponse();
         response.setId(secret.getId());
         response.setName(secret.getName());
-        response.setEncryptedValue(secret.getEncryptedValue());
+        // Opaque to clients; binary rows are Base64-encoded so the field keeps its string shape
+        response.setEncryptedValue(secret.getEncryptedData() != null
+                ? java.util.Base64.getEncoder().encodeToString(secret.getEncryptedData())
+                : secret.getEncryptedValue());
         response.setMetadata(secret.getMetadata());
-        response.setTags(secret.getTags());
+        response.setTags(secret.getTagNames());
         response.setEmail(secret.getEmail());
         response.setUsername(secret.getUsername());
         response.setCreatedAt(secret.getCreatedAt());
         response.setUpdatedAt(secret.getUpdatedAt());
+        response.setVersion(secret.getVersion());
 
         OwnerResponse owner = new OwnerResponse();
         owner.setId(secret.getOwner().getId());
@@ -155,6 +383,17 @@ public class SecretController {
         private String username;
     }
 
+    @Data
+    public static class BatchRequest {
+        private List<java.util.UUID> ids;
+    }
+
+    @Data
+    public static class ShareRequest {
+        private String username;
+        private String permission; // READ, WRITE
+    }
+
     @Data
     public static class SecretResponse {
         private java.util.UUID id;
@@ -166,7 +405,11 @@ public class SecretController {
         private String username;
         private java.time.LocalDateTime createdAt;
         private java.time.LocalDateTime updatedAt;
+        private long version; // Same as the ETag, for If-Match without a prior GET
         private OwnerResponse owner;
+        // Only on create and update with a breach corpus configured: times the new value was seen in breaches
+        @com.fasterxml.jackson.annotation.JsonInclude(com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL)
+        private Long breachCount;
     }
 
     @Data
@@ -184,6 +427,23 @@ public class SecretController {
         private String modifiedBy;
     }
 
+    @Data
+    public static class BreachCheckRequest {
+        private String value;
+    }
+
+    @Data
+    public static class BreachCheckResponse {
+        private boolean available; // False without a breach corpus; count is then always 0
+        private long count;
+    }
+
+    @Data
+    public static class ExportJobRequest {
+        private String format;
+        private String password;
+    }
+
     @Data
     public static class SecretExportResponse {
         private java.util.UUID id;
@@ -0,0 +1,34 @@
+package com.passkind.backend.controller;
+
+import com.passkind.backend.dto.TagCountResponse;
+import com.passkind.backend.service.TagService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping({ "/api/tags", "/tags" })
+public class TagController {
+
+    private final TagService tagService;
+
+    public TagController(TagService tagService) {
+        this.tagService = tagService;
+    }
+
+    // The caller's tags with how many secrets use each, most used first
+    @GetMapping
+    public ResponseEntity<List<TagCountResponse>> getTags() {
+        return ResponseEntity.ok(tagService.getMyTags());
+    }
+
+    // ?tags=a&tags=b: the other tags on secrets carrying all of a and b, with counts
+    @GetMapping("/facets")
+    public ResponseEntity<List<TagCountResponse>> getFacets(@RequestParam(required = false) List<String> tags) {
+        return ResponseEntity.ok(tagService.getMyFacets(tags));
+    }
+}
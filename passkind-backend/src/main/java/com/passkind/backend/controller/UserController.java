@@ -18,28 +18,33 @@ public class UserController {
     private final com.passkind.backend.service.OTPService otpService;
     private final com.passkind.backend.security.JwtTokenProvider tokenProvider;
     private final com.passkind.backend.service.UserService userService;
+    private final com.passkind.backend.service.TokenDenylistService tokenDenylistService;
+    private final com.passkind.backend.service.RefreshTokenService refreshTokenService;
 
     public UserController(UserRepository userRepository, com.passkind.backend.service.OTPService otpService,
             com.passkind.backend.security.JwtTokenProvider tokenProvider,
-            com.passkind.backend.service.UserService userService) {
+            com.passkind.backend.service.UserService userService,
+            com.passkind.backend.service.TokenDenylistService tokenDenylistService,
+            com.passkind.backend.service.RefreshTokenService refreshTokenService) {
         this.userRepository = userRepository;
         this.otpService = otpService;
         this.tokenProvider = tokenProvider;
         this.userService = userService;
+        this.tokenDenylistService = tokenDenylistService;
+        this.refreshTokenService = refreshTokenService;
     }
 
     @GetMapping("/me")
     public ResponseEntity<com.passkind.backend.dto.UserResponse> getCurrentUser() {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new com.passkind.backend.exception.ResourceNotFoundException("User not found"));
+        User user = userService.getUserByUsername(username);
 
         return ResponseEntity.ok(mapToUserResponse(user));
     }
 
     @GetMapping
     public ResponseEntity<java.util.List<com.passkind.backend.dto.UserResponse>> getAllUsers() {
-        java.util.List<User> users = userRepository.findAll();
+        java.util.List<User> users = userService.getAllUsers();
         java.util.List<com.passkind.backend.dto.UserResponse> response = users.stream()
                 .map(this::mapToUserResponse)
                 .collect(java.util.stream.Collectors.toList());
@@ -48,9 +53,7 @@ public class UserController {
 
     @GetMapping("/{id}")
     public ResponseEntity<com.passkind.backend.dto.UserResponse> getUserById(@PathVariable java.util.UUID id) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new com.passkind.backend.exception.ResourceNotFoundException(
-                        "User not found with id: " + id));
+        User user = userService.getUserById(id);
         return ResponseEntity.ok(mapToUserResponse(user));
     }
 
@@ -116,7 +119,8 @@ public class UserController {
         com.passkind.backend.dto.UserResponse response = mapToUserResponse(updatedUser);
 
         if (usernameChanged) {
-            // Generate new token for the new username
+            // Tokens naming the old username must stop working; generate new token for the new username
+            tokenDenylistService.revokeIssuedBefore(currentUsername);
             org.springframework.security.core.Authentication authentication = new org.springframework.security.authentication.UsernamePasswordAuthenticationToken(
                     updatedUser.getUsername(), null, java.util.Collections.emptyList());
             String newToken = tokenProvider.generateToken(authentication);
@@ -139,7 +143,11 @@ public class UserController {
     public ResponseEntity<?> changePassword(@Valid @RequestBody ChangePasswordRequest request) {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
         userService.changePassword(username, request);
-        return ResponseEntity.ok(Map.of("message", "Password changed successfully"));
+        // Every earlier token was revoked with the old password; this session continues on fresh ones
+        User user = userService.getUserByUsername(username);
+        return ResponseEntity.ok(Map.of("message", "Password changed successfully",
+                "accessToken", tokenProvider.generateToken(username),
+                "refreshToken", refreshTokenService.issue(user)));
     }
 
     // @GetMapping("/export")
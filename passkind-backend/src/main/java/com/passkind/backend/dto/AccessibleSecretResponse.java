@@ -0,0 +1,21 @@
+package com.passkind.backend.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+public class AccessibleSecretResponse {
+    private UUID id;
+    private String name;
+    private String username;
+    private String email;
+    private List<String> tags = new ArrayList<>();
+    private String owner;
+    private String permission; // OWNER, READ, WRITE
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,13 @@
+package com.passkind.backend.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+public class AuditActivityResponse {
+    private LocalDate day;
+    private String action;
+    private String resourceType;
+    private long count;
+}
@@ -0,0 +1,15 @@
+package com.passkind.backend.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class AuditLogResponse {
+    private Long id;
+    private String action;
+    private String resourceType;
+    private String resourceId;
+    private String details;
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,14 @@
+package com.passkind.backend.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BreachScanResponse {
+    // False when no breach corpus is configured; nothing was scanned then
+    private boolean available;
+    private int scanned;
+    private List<BreachedSecretResponse> breached = new ArrayList<>();
+}
@@ -0,0 +1,12 @@
+package com.passkind.backend.dto;
+
+import lombok.Data;
+
+import java.util.UUID;
+
+@Data
+public class BreachedSecretResponse {
+    private UUID id;
+    private String name;
+    private long count; // Times the value was seen in breaches
+}
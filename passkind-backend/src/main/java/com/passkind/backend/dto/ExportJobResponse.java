@@ -0,0 +1,20 @@
+package com.passkind.backend.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+public class ExportJobResponse {
+    private UUID id;
+    private String format; // excel, json
+    private String status; // QUEUED, RUNNING, COMPLETED, FAILED
+    private Integer total;
+    private int processed;
+    private Long sizeBytes;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+    private LocalDateTime expiresAt;
+}
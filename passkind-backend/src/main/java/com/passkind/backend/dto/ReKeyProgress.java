@@ -0,0 +1,18 @@
+package com.passkind.backend.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class ReKeyProgress {
+    private String state; // IDLE, RUNNING, COMPLETED, FAILED
+    private String phase; // REWRAP, SECRETS, HISTORY
+    private long total;
+    private long processed;
+    private long skipped;
+    private long failed;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+}
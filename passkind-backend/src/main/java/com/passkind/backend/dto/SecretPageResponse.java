@@ -0,0 +1,13 @@
+package com.passkind.backend.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class SecretPageResponse {
+    private List<AccessibleSecretResponse> items = new ArrayList<>();
+    // Pass back as ?cursor= for the next page; null on the last page
+    private String nextCursor;
+}
@@ -0,0 +1,9 @@
+package com.passkind.backend.dto;
+
+import lombok.Data;
+
+@Data
+public class SecretShareResponse {
+    private String username;
+    private String permission;
+}
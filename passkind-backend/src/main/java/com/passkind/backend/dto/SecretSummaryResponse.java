@@ -0,0 +1,19 @@
+package com.passkind.backend.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+public class SecretSummaryResponse {
+    private UUID id;
+    private String name;
+    private String username;
+    private String email;
+    private List<String> tags = new ArrayList<>();
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,9 @@
+package com.passkind.backend.dto;
+
+import lombok.Data;
+
+@Data
+public class TagCountResponse {
+    private String name;
+    private long count;
+}
@@ -0,0 +1,43 @@
+package com.passkind.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// Per-user daily event counts derived from audit_logs; outlives the raw partitions it was built from
+@Entity
+@Table(name = "audit_daily_rollups")
+@IdClass(AuditDailyRollup.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditDailyRollup {
+    @Id
+    private String username;
+
+    @Id
+    private LocalDate day;
+
+    @Id
+    private String action;
+
+    @Id
+    private String resourceType;
+
+    @Column(nullable = false)
+    private long eventCount;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String username;
+        private LocalDate day;
+        private String action;
+        private String resourceType;
+    }
+}
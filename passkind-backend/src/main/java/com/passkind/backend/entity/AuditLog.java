@@ -7,6 +7,8 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
+// Range-partitioned by month on timestamp, keyed (id, timestamp) and indexed on (username, timestamp);
+// all of that lives in the Flyway migrations (db/migration)
 @Table(name = "audit_logs")
 @Data
 @NoArgsConstructor
@@ -0,0 +1,40 @@
+package com.passkind.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Per-user AES data key, stored wrapped (AES-GCM) under one of the configured master keys
+@Entity
+@Table(name = "data_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DataKey {
+    @Id
+    private UUID id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String wrappedKey;
+
+    @Column(nullable = false)
+    private String masterKeyId;
+
+    @Column(nullable = false)
+    private Boolean active = true;
+
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -5,10 +5,11 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Entity
 @Table(name = "secrets")
@@ -29,15 +30,27 @@ public class Secret {
     @Column(nullable = true)
     private String username;
 
-    @Column(nullable = false, columnDefinition = "TEXT")
+    // Legacy Base64 ciphertext; cleared once the row is rewritten into encryptedData
+    @Column(nullable = true, columnDefinition = "TEXT")
     private String encryptedValue;
 
+    // Binary ciphertext: version || dataKeyId || iv || ciphertext+tag (see EncryptionService)
+    @Column(columnDefinition = "bytea")
+    private byte[] encryptedData;
+
+    // Data key named in the ciphertext header; null for legacy single-key ciphertext
+    private java.util.UUID dataKeyId;
+
     @ManyToOne
     @JoinColumn(name = "user_id", nullable = false)
     private User owner;
 
-    @ElementCollection
-    private List<String> tags = new ArrayList<>();
+    // Entries in the owner's tag catalog. A set, so an update only inserts or deletes the links that changed.
+    @ManyToMany
+    @JoinTable(name = "secret_tag_links", joinColumns = @JoinColumn(name = "secret_id"),
+            inverseJoinColumns = @JoinColumn(name = "tag_id"))
+    @org.hibernate.annotations.BatchSize(size = 50)
+    private Set<Tag> tags = new LinkedHashSet<>();
 
     @org.hibernate.annotations.JdbcTypeCode(org.hibernate.type.SqlTypes.JSON)
     @Column(columnDefinition = "jsonb")
@@ -46,6 +59,14 @@ public class Secret {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    // Bumped on every update (tag changes included); exposed to clients as the ETag
+    @Version
+    private long version;
+
+    public List<String> getTagNames() {
+        return tags.stream().map(Tag::getName).sorted().toList();
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -38,6 +38,12 @@ public class SecretHistory {
     @Column(columnDefinition = "jsonb")
     private Map<String, Object> previousData;
 
+    // Data key of previousData.encryptedSecretValue; null while the snapshot still holds plaintext or legacy ciphertext
+    private UUID dataKeyId;
+
+    // Version of the secret that previousData describes; null for snapshots taken before versioning
+    private Long secretVersion;
+
     @PrePersist
     protected void onCreate() {
         modifiedAt = LocalDateTime.now(java.time.ZoneId.of("Asia/Kolkata"));
@@ -6,7 +6,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "secret_shares")
+// (secret_id, user_id) serves the access check, (user_id, secret_id) the "shared with me" listing
+@Table(name = "secret_shares", uniqueConstraints = @UniqueConstraint(name = "uk_secret_shares_secret_user",
+        columnNames = { "secret_id", "user_id" }), indexes = @Index(name = "idx_secret_shares_user_secret",
+                columnList = "user_id, secret_id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
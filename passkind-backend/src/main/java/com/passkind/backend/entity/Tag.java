@@ -0,0 +1,35 @@
+package com.passkind.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+@Entity
+// One row per (user, tag name); usageCount is the number of that user's secrets carrying the tag
+@Table(name = "tags", uniqueConstraints = @UniqueConstraint(name = "uk_tags_user_name",
+        columnNames = { "user_id", "name" }))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+// Identity only, so tags can sit in Secret's Set while usageCount changes
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class Tag {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @EqualsAndHashCode.Include
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    @ToString.Exclude
+    private User owner;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Column(nullable = false)
+    private long usageCount;
+}
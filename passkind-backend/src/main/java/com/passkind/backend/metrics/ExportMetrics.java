@@ -0,0 +1,41 @@
+package com.passkind.backend.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ExportMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public ExportMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    // bytes is negative when the body was streamed and its size is not known
+    public void record(String format, Timer.Sample sample, int secrets, long bytes) {
+        sample.stop(Timer.builder("passkind.export.duration")
+                .description("Vault export duration")
+                .tag("format", format)
+                .register(meterRegistry));
+        DistributionSummary.builder("passkind.export.secrets")
+                .description("Secrets included per vault export")
+                .tag("format", format)
+                .register(meterRegistry)
+                .record(secrets);
+        if (bytes >= 0) {
+            DistributionSummary.builder("passkind.export.size")
+                    .description("Vault export payload size")
+                    .baseUnit("bytes")
+                    .tag("format", format)
+                    .register(meterRegistry)
+                    .record(bytes);
+        }
+    }
+}
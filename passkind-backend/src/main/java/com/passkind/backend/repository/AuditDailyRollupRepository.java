@@ -0,0 +1,24 @@
+package com.passkind.backend.repository;
+
+import com.passkind.backend.entity.AuditDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface AuditDailyRollupRepository extends JpaRepository<AuditDailyRollup, AuditDailyRollup.Key> {
+    List<AuditDailyRollup> findByUsernameAndDayBetweenOrderByDayAsc(String username, LocalDate from, LocalDate to);
+
+    // Recomputes whole days from `from` onwards; re-running over the same days is idempotent
+    @Modifying
+    @Query(value = "INSERT INTO audit_daily_rollups (username, day, action, resource_type, event_count) "
+            + "SELECT username, CAST(\"timestamp\" AS date), action, resource_type, count(*) FROM audit_logs "
+            + "WHERE \"timestamp\" >= :from GROUP BY 1, 2, 3, 4 "
+            + "ON CONFLICT (username, day, action, resource_type) DO UPDATE SET event_count = EXCLUDED.event_count",
+            nativeQuery = true)
+    int rollUpSince(@Param("from") LocalDateTime from);
+}
@@ -2,8 +2,8 @@ package com.passkind.backend.repository;
 
 import com.passkind.backend.entity.AuditLog;
 import org.springframework.data.jpa.repository.JpaRepository;
-import java.util.List;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 
-public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
-    List<AuditLog> findByUsernameOrderByTimestampDesc(String username);
+// Filtered, keyset-paginated reads are built as Specifications in AuditService
+public interface AuditLogRepository extends JpaRepository<AuditLog, Long>, JpaSpecificationExecutor<AuditLog> {
 }
@@ -0,0 +1,21 @@
+package com.passkind.backend.repository;
+
+import com.passkind.backend.entity.DataKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface DataKeyRepository extends JpaRepository<DataKey, UUID> {
+    Optional<DataKey> findFirstByUser_IdAndActiveTrueOrderByCreatedAtDesc(UUID userId);
+
+    List<DataKey> findByMasterKeyIdNot(String masterKeyId);
+
+    @Modifying
+    @Query("update DataKey k set k.active = false where k.active = true")
+    int deactivateAll();
+}
@@ -2,11 +2,29 @@ package com.passkind.backend.repository;
 
 import com.passkind.backend.entity.Secret;
 import com.passkind.backend.entity.SecretHistory;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 public interface SecretHistoryRepository extends JpaRepository<SecretHistory, UUID> {
     List<SecretHistory> findBySecretOrderByModifiedAtDesc(Secret secret);
+
+    java.util.Optional<SecretHistory> findFirstBySecretAndSecretVersion(Secret secret, Long secretVersion);
+
+    String STALE_KEY = "h.previousData is not null and (h.dataKeyId is null or not exists "
+            + "(select 1 from DataKey k where k.id = h.dataKeyId and k.active = true))";
+
+    @Query("select h.id from SecretHistory h where h.id > :afterId and " + STALE_KEY + " order by h.id")
+    List<UUID> findIdsNeedingReKey(@Param("afterId") UUID afterId, Pageable pageable);
+
+    @Query("select count(h) from SecretHistory h where " + STALE_KEY)
+    long countNeedingReKey();
+
+    @Query("select h from SecretHistory h join fetch h.secret s join fetch s.owner where h.id in :ids")
+    List<SecretHistory> findWithOwnerByIdIn(@Param("ids") Collection<UUID> ids);
 }
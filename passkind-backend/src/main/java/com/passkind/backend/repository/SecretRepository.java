@@ -2,10 +2,142 @@ package com.passkind.backend.repository;
 
 import com.passkind.backend.entity.Secret;
 import com.passkind.backend.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface SecretRepository extends JpaRepository<Secret, UUID> {
+    // Tags (and the owner, where it is not the caller's own loaded user) are fetched with the secrets wherever they
+    // are handed back for mapping, which happens after the transaction has ended (no open-in-view)
+    @EntityGraph(attributePaths = "tags")
     List<Secret> findByOwner(User owner);
+
+    @EntityGraph(attributePaths = { "tags", "owner" })
+    Optional<Secret> findWithTagsAndOwnerById(UUID id);
+
+    // Column-only projection for list views: never touches encrypted_value or metadata
+    @Query("select s.id as id, s.name as name, s.username as username, s.email as email, "
+            + "s.createdAt as createdAt, s.updatedAt as updatedAt "
+            + "from Secret s where s.owner.username = :ownerUsername order by s.updatedAt desc")
+    List<SecretSummaryView> findSummariesByOwnerUsername(@Param("ownerUsername") String ownerUsername);
+
+    // Summaries of the owner's secrets that carry every one of the given catalog tags; the subquery
+    // walks secret_tag_links by (tag_id, secret_id)
+    @Query("select s.id as id, s.name as name, s.username as username, s.email as email, "
+            + "s.createdAt as createdAt, s.updatedAt as updatedAt "
+            + "from Secret s where s.owner.username = :ownerUsername and s.id in "
+            + "(select ts.id from Secret ts join ts.tags t where t.id in :tagIds group by ts.id "
+            + "having count(t) = :required) order by s.updatedAt desc")
+    List<SecretSummaryView> findSummariesByOwnerUsernameAndTagIds(@Param("ownerUsername") String ownerUsername,
+            @Param("tagIds") Collection<Long> tagIds, @Param("required") long required);
+
+    @Query("select s.id as secretId, t.name as tag from Secret s join s.tags t "
+            + "where s.owner.username = :ownerUsername")
+    List<SecretTagView> findTagsByOwnerUsername(@Param("ownerUsername") String ownerUsername);
+
+    @Query("select s.id as secretId, t.name as tag from Secret s join s.tags t where s.id in :ids")
+    List<SecretTagView> findTagsBySecretIdIn(@Param("ids") Collection<UUID> ids);
+
+    // Owned and shared-with-me secrets in one pass, newest first, continuing strictly after (updatedAt, id)
+    @Query("select s.id as id, s.name as name, s.username as username, s.email as email, o.username as owner, "
+            + "case when o = u then 'OWNER' else sh.permission end as permission, "
+            + "s.createdAt as createdAt, s.updatedAt as updatedAt "
+            + "from Secret s join s.owner o join User u on u.username = :username "
+            + "left join SecretShare sh on sh.secret = s and sh.sharedWith = u "
+            + "where (o = u or sh.id is not null) "
+            + "and (s.updatedAt < :updatedAt or (s.updatedAt = :updatedAt and s.id < :id)) "
+            + "order by s.updatedAt desc, s.id desc")
+    List<AccessibleSecretView> findAccessibleBefore(@Param("username") String username,
+            @Param("updatedAt") LocalDateTime updatedAt, @Param("id") UUID id, Pageable pageable);
+
+    // Same page, narrowed by metadata: `contains` is a JSON object matched with @> (idx_secrets_metadata),
+    // `keys` a JSON array of keys that must exist (jsonb_exists is the ? operator, which JDBC reserves) and
+    // `prefixes` a JSON object of key -> value prefix
+    @Query(value = "SELECT s.id AS \"id\", s.name AS \"name\", s.username AS \"username\", s.email AS \"email\", "
+            + "o.username AS \"owner\", CASE WHEN o.id = u.id THEN 'OWNER' ELSE sh.permission END AS \"permission\", "
+            + "s.created_at AS \"createdAt\", s.updated_at AS \"updatedAt\" "
+            + "FROM secrets s JOIN users o ON o.id = s.user_id JOIN users u ON u.username = :username "
+            + "LEFT JOIN secret_shares sh ON sh.secret_id = s.id AND sh.user_id = u.id "
+            + "WHERE (o.id = u.id OR sh.id IS NOT NULL) "
+            + "AND (s.updated_at < :updatedAt OR (s.updated_at = :updatedAt AND s.id < :id)) "
+            + "AND s.metadata @> CAST(:contains AS jsonb) "
+            + "AND NOT EXISTS (SELECT 1 FROM jsonb_array_elements_text(CAST(:keys AS jsonb)) k "
+            + "WHERE NOT jsonb_exists(s.metadata, k)) "
+            + "AND NOT EXISTS (SELECT 1 FROM jsonb_each_text(CAST(:prefixes AS jsonb)) p "
+            + "WHERE NOT coalesce(starts_with(s.metadata ->> p.key, p.value), false)) "
+            + "ORDER BY s.updated_at DESC, s.id DESC LIMIT :limit", nativeQuery = true)
+    List<AccessibleSecretView> findAccessibleByMetadataBefore(@Param("username") String username,
+            @Param("updatedAt") LocalDateTime updatedAt, @Param("id") UUID id, @Param("contains") String contains,
+            @Param("keys") String keys, @Param("prefixes") String prefixes, @Param("limit") int limit);
+
+    // Rows under a retired key, or still in the Base64 text format
+    String STALE_KEY = "(s.encryptedValue is not null or s.dataKeyId is null or not exists "
+            + "(select 1 from DataKey k where k.id = s.dataKeyId and k.active = true))";
+
+    @Query("select s.id from Secret s where s.id > :afterId and " + STALE_KEY + " order by s.id")
+    List<UUID> findIdsNeedingReKey(@Param("afterId") UUID afterId, Pageable pageable);
+
+    @Query("select count(s) from Secret s where " + STALE_KEY)
+    long countNeedingReKey();
+
+    long countByEncryptedValueIsNotNull();
+
+    // Batch reads: ownership is part of the lookup itself (id in (...) and user_id = ?)
+    @EntityGraph(attributePaths = "tags")
+    @Query("select s from Secret s where s.id in :ids and s.owner = :owner")
+    List<Secret> findByIdInAndOwner(@Param("ids") Collection<UUID> ids, @Param("owner") User owner);
+
+    @Query("select s from Secret s join fetch s.owner where s.id in :ids")
+    List<Secret> findWithOwnerByIdIn(@Param("ids") Collection<UUID> ids);
+
+    // Compare-and-set so a concurrent user edit always wins over background re-encryption. The version is bumped
+    // too: a user edit of the row as loaded before re-encryption writes every column, so it must fail its
+    // optimistic lock rather than put the old ciphertext and key id back
+    @Modifying
+    @Query("update Secret s set s.encryptedData = :newData, s.dataKeyId = :dataKeyId, s.version = s.version + 1 "
+            + "where s.id = :id and s.encryptedData = :oldData")
+    int compareAndSetEncryptedData(@Param("id") UUID id, @Param("oldData") byte[] oldData,
+            @Param("newData") byte[] newData, @Param("dataKeyId") UUID dataKeyId);
+
+    // Same, for rows still holding Base64 text: moves them to the binary column
+    @Modifying
+    @Query("update Secret s set s.encryptedData = :newData, s.encryptedValue = null, s.dataKeyId = :dataKeyId, "
+            + "s.version = s.version + 1 where s.id = :id and s.encryptedValue = :oldValue")
+    int compareAndSetLegacyValue(@Param("id") UUID id, @Param("oldValue") String oldValue,
+            @Param("newData") byte[] newData, @Param("dataKeyId") UUID dataKeyId);
+
+    interface SecretSummaryView {
+        UUID getId();
+
+        String getName();
+
+        String getUsername();
+
+        String getEmail();
+
+        LocalDateTime getCreatedAt();
+
+        LocalDateTime getUpdatedAt();
+    }
+
+    interface AccessibleSecretView extends SecretSummaryView {
+        String getOwner();
+
+        String getPermission();
+    }
+
+    interface SecretTagView {
+        UUID getSecretId();
+
+        String getTag();
+    }
 }
@@ -1,10 +1,28 @@
 package com.passkind.backend.repository;
 
+import com.passkind.backend.entity.Secret;
 import com.passkind.backend.entity.SecretShare;
 import com.passkind.backend.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 public interface SecretShareRepository extends JpaRepository<SecretShare, Long> {
     List<SecretShare> findBySharedWith(User user);
+
+    Optional<SecretShare> findBySecretAndSharedWith(Secret secret, User sharedWith);
+
+    @Query("select sh from SecretShare sh join fetch sh.sharedWith where sh.secret = :secret")
+    List<SecretShare> findWithUserBySecret(@Param("secret") Secret secret);
+
+    // OWNER, the share permission, or NONE; no row when the secret does not exist.
+    // Every lookup is by primary or unique key: secrets.id, secret_shares(secret_id, user_id).
+    @Query("select case when s.owner.id = :userId then 'OWNER' else coalesce(sh.permission, 'NONE') end "
+            + "from Secret s left join SecretShare sh on sh.secret = s and sh.sharedWith.id = :userId "
+            + "where s.id = :secretId")
+    Optional<String> findAccess(@Param("secretId") UUID secretId, @Param("userId") UUID userId);
 }
@@ -0,0 +1,49 @@
+package com.passkind.backend.repository;
+
+import com.passkind.backend.entity.Tag;
+import com.passkind.backend.entity.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface TagRepository extends JpaRepository<Tag, Long> {
+    List<Tag> findByOwnerAndNameIn(User owner, Collection<String> names);
+
+    @Query("select t.id from Tag t where t.owner.username = :ownerUsername and t.name in :names")
+    List<Long> findIdsByOwnerUsernameAndNameIn(@Param("ownerUsername") String ownerUsername,
+            @Param("names") Collection<String> names);
+
+    // Concurrent requests may create the same tag; the unique (user_id, name) key keeps one row
+    @Modifying
+    @Query(value = "INSERT INTO tags (user_id, name, usage_count) VALUES (:userId, :name, 0) "
+            + "ON CONFLICT (user_id, name) DO NOTHING", nativeQuery = true)
+    void insertIfAbsent(@Param("userId") UUID userId, @Param("name") String name);
+
+    // Relative update, so concurrent edits of different secrets never lose a count
+    @Modifying
+    @Query("update Tag t set t.usageCount = t.usageCount + :delta where t.id in :ids")
+    int adjustUsage(@Param("ids") Collection<Long> ids, @Param("delta") long delta);
+
+    @Query("select t.name as name, t.usageCount as count from Tag t "
+            + "where t.owner.username = :ownerUsername and t.usageCount > 0 order by t.usageCount desc, t.name")
+    List<TagCountView> findCatalogByOwnerUsername(@Param("ownerUsername") String ownerUsername);
+
+    // Counts of the other tags on secrets carrying every selected tag. Tags are per user, so the
+    // selected ids already scope this to the caller's secrets; both lookups use (tag_id, secret_id).
+    @Query(value = "SELECT t.name AS name, count(*) AS count FROM secret_tag_links l JOIN tags t ON t.id = l.tag_id "
+            + "WHERE l.secret_id IN (SELECT secret_id FROM secret_tag_links WHERE tag_id IN (:tagIds) "
+            + "GROUP BY secret_id HAVING count(*) = :required) AND l.tag_id NOT IN (:tagIds) "
+            + "GROUP BY t.name ORDER BY count(*) DESC, t.name", nativeQuery = true)
+    List<TagCountView> findFacets(@Param("tagIds") Collection<Long> tagIds, @Param("required") long required);
+
+    interface TagCountView {
+        String getName();
+
+        Long getCount();
+    }
+}
@@ -1,7 +1,10 @@
 package com.passkind.backend.repository;
 
+import com.passkind.backend.entity.Role;
 import com.passkind.backend.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, java.util.UUID> {
@@ -14,5 +17,11 @@ public interface UserRepository extends JpaRepository<User, java.util.UUID> {
 
     Boolean existsByUsername(String username);
 
+    @Query("select u.id from User u where u.username = :username")
+    Optional<java.util.UUID> findIdByUsername(@Param("username") String username);
+
     Optional<User> findByPhoneNumber(Long phoneNumber);
+
+    @Query("select count(u) > 0 from User u join u.roles r where u.username = :username and r = :role")
+    boolean hasRole(@Param("username") String username, @Param("role") Role role);
 }
@@ -1,5 +1,9 @@
 package com.passkind.backend.security;
 
+import com.passkind.backend.service.TokenDenylistService;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -22,9 +26,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
     private final JwtTokenProvider tokenProvider;
+    private final TokenDenylistService tokenDenylistService;
+    private final Timer validTokenTimer;
+    private final Timer invalidTokenTimer;
 
-    public JwtAuthenticationFilter(JwtTokenProvider tokenProvider) {
+    public JwtAuthenticationFilter(JwtTokenProvider tokenProvider, TokenDenylistService tokenDenylistService,
+            MeterRegistry meterRegistry) {
         this.tokenProvider = tokenProvider;
+        this.tokenDenylistService = tokenDenylistService;
+        this.validTokenTimer = Timer.builder("passkind.jwt.validation").tag("outcome", "valid")
+                .description("JWT signature and expiry validation latency").register(meterRegistry);
+        this.invalidTokenTimer = Timer.builder("passkind.jwt.validation").tag("outcome", "invalid")
+                .description("JWT signature and expiry validation latency").register(meterRegistry);
     }
 
     @Override
@@ -33,8 +46,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         String jwt = getJwtFromRequest(request);
 
         if (StringUtils.hasText(jwt)) {
-            if (tokenProvider.validateToken(jwt)) {
-                String username = tokenProvider.getUsernameFromJWT(jwt);
+            long start = System.nanoTime();
+            Claims claims = tokenProvider.parseClaims(jwt);
+            (claims != null ? validTokenTimer : invalidTokenTimer).record(System.nanoTime() - start,
+                    java.util.concurrent.TimeUnit.NANOSECONDS);
+
+            if (claims != null && tokenDenylistService.isRevoked(claims.getId(), claims.getSubject(),
+                    claims.getIssuedAt())) {
+                logger.debug("Revoked JWT token for {}", claims.getSubject());
+            } else if (claims != null) {
+                String username = claims.getSubject();
 
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         username, null, Collections.emptyList());
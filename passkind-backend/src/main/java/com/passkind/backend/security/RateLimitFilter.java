@@ -0,0 +1,149 @@
+package com.passkind.backend.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.passkind.backend.dto.ErrorResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+// Per-user token buckets, one per endpoint class, for authenticated requests (runs right after
+// JwtAuthenticationFilter). Each bucket is a single AtomicLong holding the GCRA "theoretical arrival time",
+// advanced with compareAndSet, so checks never lock. Buckets idle longer than the expiry are evicted and the
+// total per class is capped, which bounds memory regardless of how many users show up.
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    enum EndpointClass {
+        VALUE, EXPORT, DEFAULT
+    }
+
+    // Decrypting values, and building exports (POI + password check)
+    private static final Pattern VALUE_PATH = Pattern.compile("^/(api/)?secrets/([^/]+/value|values)$");
+    private static final Pattern EXPORT_PATH = Pattern.compile("^/(api/)?secrets/export(/excel|/jobs)?$");
+
+    private record Limit(long intervalNanos, long burstNanos, Cache<String, AtomicLong> buckets, Counter throttled) {
+    }
+
+    private final boolean enabled;
+    private final ObjectMapper objectMapper;
+    private final Map<EndpointClass, Limit> limits = new EnumMap<>(EndpointClass.class);
+
+    public RateLimitFilter(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${app.rate-limit.enabled:true}") boolean enabled,
+            @Value("${app.rate-limit.idle-expiry-seconds:600}") long idleExpirySeconds,
+            @Value("${app.rate-limit.max-users:100000}") long maxUsers,
+            @Value("${app.rate-limit.value.capacity:30}") long valueCapacity,
+            @Value("${app.rate-limit.value.per-minute:120}") long valuePerMinute,
+            @Value("${app.rate-limit.export.capacity:3}") long exportCapacity,
+            @Value("${app.rate-limit.export.per-minute:6}") long exportPerMinute,
+            @Value("${app.rate-limit.default.capacity:200}") long defaultCapacity,
+            @Value("${app.rate-limit.default.per-minute:1200}") long defaultPerMinute) {
+        this.enabled = enabled;
+        this.objectMapper = objectMapper;
+        Duration idleExpiry = Duration.ofSeconds(idleExpirySeconds);
+        limits.put(EndpointClass.VALUE,
+                limit(EndpointClass.VALUE, valueCapacity, valuePerMinute, idleExpiry, maxUsers, meterRegistry));
+        limits.put(EndpointClass.EXPORT,
+                limit(EndpointClass.EXPORT, exportCapacity, exportPerMinute, idleExpiry, maxUsers, meterRegistry));
+        limits.put(EndpointClass.DEFAULT,
+                limit(EndpointClass.DEFAULT, defaultCapacity, defaultPerMinute, idleExpiry, maxUsers, meterRegistry));
+    }
+
+    private static Limit limit(EndpointClass endpointClass, long capacity, long perMinute, Duration idleExpiry,
+            long maxUsers, MeterRegistry meterRegistry) {
+        String tag = endpointClass.name().toLowerCase();
+        // One token every intervalNanos; up to `capacity` requests may arrive back to back
+        long intervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, perMinute);
+        long burstNanos = (Math.max(1, capacity) - 1) * intervalNanos;
+        Cache<String, AtomicLong> buckets = Caffeine.newBuilder().maximumSize(maxUsers)
+                .expireAfterAccess(idleExpiry).build();
+        Gauge.builder("passkind.ratelimit.buckets", buckets, Cache::estimatedSize).tag("class", tag)
+                .description("Live per-user rate limit buckets").register(meterRegistry);
+        Counter throttled = Counter.builder("passkind.ratelimit.throttled").tag("class", tag)
+                .description("Requests rejected with 429 by the per-user rate limiter").register(meterRegistry);
+        return new Limit(intervalNanos, burstNanos, buckets, throttled);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        Limit limit = limits.get(classify(request));
+        AtomicLong bucket = limit.buckets().get(authentication.getName(), key -> new AtomicLong(Long.MIN_VALUE));
+        long waitNanos = tryAcquire(bucket, System.nanoTime(), limit.intervalNanos(), limit.burstNanos());
+        if (waitNanos == 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        limit.throttled().increment();
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ErrorResponse(HttpStatus.TOO_MANY_REQUESTS.value(),
+                "Too Many Requests", "Rate limit exceeded, retry in " + retryAfterSeconds + "s",
+                request.getRequestURI()));
+    }
+
+    // 0 when a token was taken, otherwise how long until the next one frees up. The bucket is full when the
+    // arrival time lies in the past; each request pushes it one interval further, and requests are refused
+    // while it runs more than the burst allowance ahead of now.
+    static long tryAcquire(AtomicLong bucket, long now, long intervalNanos, long burstNanos) {
+        while (true) {
+            long arrival = bucket.get();
+            long base = Math.max(arrival, now);
+            long ahead = base - now;
+            if (ahead > burstNanos) {
+                return ahead - burstNanos;
+            }
+            if (bucket.compareAndSet(arrival, base + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    private static EndpointClass classify(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (VALUE_PATH.matcher(path).matches()) {
+            return EndpointClass.VALUE;
+        }
+        if (EXPORT_PATH.matcher(path).matches()) {
+            return EndpointClass.EXPORT;
+        }
+        return EndpointClass.DEFAULT;
+    }
+}
@@ -0,0 +1,295 @@
+package com.passkind.backend.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+// Keeps audit_logs partitioned by month: creates partitions ahead of time, moves rows that landed in the default
+// partition into their month's partition, and detaches partitions past retention, archives them to gzipped NDJSON
+// and drops them. The table itself is partitioned by the V1 migration.
+@Service
+public class AuditRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditRetentionService.class);
+    private static final String PARENT_TABLE = "audit_logs";
+    private static final String DEFAULT_PARTITION = "audit_logs_default";
+    private static final String COLUMNS = "id, username, action, resource_type, resource_id, details, \"timestamp\"";
+    private static final Pattern PARTITION_NAME = Pattern.compile("audit_logs_(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    // Arbitrary constant so only one node runs maintenance at a time
+    private static final long ADVISORY_LOCK_KEY = 0x7061_7373_6175_6469L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditService auditService;
+    private final JsonFactory jsonFactory;
+    private final Counter archivedRows;
+    private final Counter createFailures;
+    private final Counter relocateFailures;
+    private final int retentionMonths;
+    private final int premakeMonths;
+    private final Path archiveDir;
+
+    public AuditRetentionService(JdbcTemplate jdbcTemplate, AuditService auditService, ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.audit.retention-months:12}") int retentionMonths,
+            @Value("${app.audit.premake-months:3}") int premakeMonths,
+            @Value("${app.audit.archive-dir:./audit-archive}") String archiveDir) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.auditService = auditService;
+        this.jsonFactory = objectMapper.getFactory();
+        this.archivedRows = Counter.builder("passkind.audit.archived")
+                .description("Audit log rows moved from the database to archive files")
+                .register(meterRegistry);
+        this.createFailures = failureCounter(meterRegistry, "create");
+        this.relocateFailures = failureCounter(meterRegistry, "relocate");
+        this.retentionMonths = retentionMonths;
+        this.premakeMonths = premakeMonths;
+        this.archiveDir = Paths.get(archiveDir);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        runMaintenance();
+    }
+
+    @Scheduled(cron = "${app.audit.maintenance-cron:0 15 3 * * *}")
+    public void runMaintenance() {
+        try {
+            // Daily rollups must cover a partition before it leaves the database
+            auditService.refreshRollups();
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                if (!tryLock(connection)) {
+                    logger.info("Audit maintenance already running on another node");
+                    return null;
+                }
+                try {
+                    maintain(connection);
+                } finally {
+                    unlock(connection);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            logger.error("Audit log maintenance failed", e);
+        }
+    }
+
+    private void maintain(Connection connection) throws SQLException {
+        // First, so the months' partitions can be created and later retired like any other
+        for (YearMonth month : monthsInDefault(connection)) {
+            relocateFromDefault(connection, month);
+        }
+
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= premakeMonths; i++) {
+            createPartition(connection, current.plusMonths(i));
+        }
+
+        YearMonth cutoff = current.minusMonths(retentionMonths);
+        List<String> expired = new ArrayList<>();
+        for (String table : attachedPartitions(connection)) {
+            YearMonth month = monthOf(table);
+            if (month != null && month.isBefore(cutoff)) {
+                expired.add(table);
+            }
+        }
+        for (String table : expired) {
+            execute(connection, "ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + table);
+            logger.info("Detached audit partition {}", table);
+        }
+
+        // Includes partitions detached by an earlier run that stopped before archiving
+        for (String table : detachedPartitions(connection)) {
+            try {
+                long rows = archive(connection, table);
+                execute(connection, "DROP TABLE " + table);
+                archivedRows.increment(rows);
+                logger.info("Archived {} audit rows from {} to {}", rows, table, archiveDir);
+            } catch (IOException e) {
+                // Table stays detached and is retried on the next run
+                logger.error("Failed to archive audit partition {}: {}", table, e.getMessage());
+            }
+        }
+    }
+
+    private void createPartition(Connection connection, YearMonth month) throws SQLException {
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        try {
+            execute(connection, "CREATE TABLE IF NOT EXISTS " + PARENT_TABLE + "_" + month.format(SUFFIX)
+                    + " PARTITION OF " + PARENT_TABLE + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        } catch (SQLException e) {
+            // Inserts for that month keep landing in the default partition until a later run succeeds
+            createFailures.increment();
+            logger.error("Could not create audit partition for {}: {}", month, e.getMessage());
+        }
+    }
+
+    // Rows land in the default partition when their month had no partition yet (clock skew, backfills, a failed
+    // premake). Postgres refuses to create a partition whose range the default already holds rows for, so the
+    // month's rows are moved into a new table that is then attached, all in one transaction.
+    private void relocateFromDefault(Connection connection, YearMonth month) throws SQLException {
+        String table = PARENT_TABLE + "_" + month.format(SUFFIX);
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE " + table + " (LIKE " + PARENT_TABLE + " INCLUDING DEFAULTS)");
+            int rows = statement.executeUpdate("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                    + " WHERE \"timestamp\" >= '" + from + "' AND \"timestamp\" < '" + to + "' RETURNING " + COLUMNS
+                    + ") INSERT INTO " + table + " (" + COLUMNS + ") SELECT " + COLUMNS + " FROM moved");
+            statement.execute("ALTER TABLE " + PARENT_TABLE + " ATTACH PARTITION " + table
+                    + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+            connection.commit();
+            logger.info("Moved {} audit rows from {} into {}", rows, DEFAULT_PARTITION, table);
+        } catch (SQLException e) {
+            // E.g. the month's partition is still detached, awaiting archiving; retried on the next run
+            connection.rollback();
+            relocateFailures.increment();
+            logger.error("Could not move audit rows for {} out of {}: {}", month, DEFAULT_PARTITION, e.getMessage());
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private List<YearMonth> monthsInDefault(Connection connection) throws SQLException {
+        List<YearMonth> months = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT DISTINCT CAST(date_trunc('month', \"timestamp\") "
+                        + "AS date) FROM " + DEFAULT_PARTITION)) {
+            while (rs.next()) {
+                months.add(YearMonth.from(rs.getDate(1).toLocalDate()));
+            }
+        }
+        return months;
+    }
+
+    // Streams the partition in timestamp order into <table>.ndjson.gz; written to a temp file and moved into place
+    private long archive(Connection connection, String table) throws SQLException, IOException {
+        Files.createDirectories(archiveDir);
+        // A month archived before (its late rows were moved out of the default partition since) keeps that file
+        Path target = archiveDir.resolve(table + ".ndjson.gz");
+        for (int n = 2; Files.exists(target); n++) {
+            target = archiveDir.resolve(table + "-" + n + ".ndjson.gz");
+        }
+        Path temp = archiveDir.resolve(table + ".ndjson.gz.tmp");
+
+        long rows = 0;
+        boolean autoCommit = connection.getAutoCommit();
+        // PgJDBC only uses a cursor (fetchSize) outside autocommit
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement();
+                OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), 64 * 1024);
+                JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            statement.setFetchSize(1000);
+            try (ResultSet rs = statement.executeQuery("SELECT id, username, action, resource_type, resource_id, "
+                    + "details, \"timestamp\" FROM " + table + " ORDER BY \"timestamp\", id")) {
+                while (rs.next()) {
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", rs.getLong(1));
+                    generator.writeStringField("username", rs.getString(2));
+                    generator.writeStringField("action", rs.getString(3));
+                    generator.writeStringField("resourceType", rs.getString(4));
+                    generator.writeStringField("resourceId", rs.getString(5));
+                    generator.writeStringField("details", rs.getString(6));
+                    generator.writeStringField("timestamp", rs.getTimestamp(7).toLocalDateTime().toString());
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                    rows++;
+                }
+            }
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    private List<String> attachedPartitions(Connection connection) throws SQLException {
+        return partitionTables(connection, "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                + "WHERE i.inhparent = '" + PARENT_TABLE + "'::regclass");
+    }
+
+    private List<String> detachedPartitions(Connection connection) throws SQLException {
+        return partitionTables(connection, "SELECT c.relname FROM pg_class c "
+                + "WHERE c.relkind = 'r' AND c.relnamespace = current_schema()::regnamespace "
+                + "AND c.relname LIKE '" + PARENT_TABLE + "\\_%' "
+                + "AND NOT EXISTS (SELECT 1 FROM pg_inherits i WHERE i.inhrelid = c.oid)");
+    }
+
+    // Only names matching audit_logs_YYYY_MM; the default partition is emptied by relocateFromDefault instead
+    private static List<String> partitionTables(Connection connection, String sql) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+            while (rs.next()) {
+                if (monthOf(rs.getString(1)) != null) {
+                    tables.add(rs.getString(1));
+                }
+            }
+        }
+        return tables;
+    }
+
+    private static Counter failureCounter(MeterRegistry meterRegistry, String step) {
+        return Counter.builder("passkind.audit.failures").tag("step", step)
+                .description("Audit partitions that could not be created or filled from the default partition")
+                .register(meterRegistry);
+    }
+
+    private static YearMonth monthOf(String table) {
+        Matcher matcher = PARTITION_NAME.matcher(table);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+    }
+
+    private static boolean tryLock(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT pg_try_advisory_lock(" + ADVISORY_LOCK_KEY + ")")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    private static void unlock(Connection connection) throws SQLException {
+        execute(connection, "SELECT pg_advisory_unlock(" + ADVISORY_LOCK_KEY + ")");
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
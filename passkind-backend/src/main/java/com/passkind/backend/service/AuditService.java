@@ -0,0 +1,147 @@
+package com.passkind.backend.service;
+
+import com.passkind.backend.dto.AuditActivityResponse;
+import com.passkind.backend.dto.AuditLogResponse;
+import com.passkind.backend.dto.AuditPageResponse;
+import com.passkind.backend.entity.AuditDailyRollup;
+import com.passkind.backend.entity.AuditLog;
+import com.passkind.backend.exception.BadRequestException;
+import com.passkind.backend.repository.AuditDailyRollupRepository;
+import com.passkind.backend.repository.AuditLogRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+@Service
+public class AuditService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditService.class);
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("timestamp"), Sort.Order.desc("id"));
+
+    private final AuditLogRepository auditLogRepository;
+    private final AuditDailyRollupRepository auditDailyRollupRepository;
+
+    public AuditService(AuditLogRepository auditLogRepository,
+            AuditDailyRollupRepository auditDailyRollupRepository) {
+        this.auditLogRepository = auditLogRepository;
+        this.auditDailyRollupRepository = auditDailyRollupRepository;
+    }
+
+    // Newest first. The cursor carries the (timestamp, id) of the last row served, so each page is an index
+    // range scan on (username, timestamp) regardless of depth; the time range also prunes monthly partitions.
+    @Transactional(readOnly = true)
+    public AuditPageResponse getMyAuditTrail(String action, String resourceType, LocalDateTime from,
+            LocalDateTime to, String cursor, Integer limit) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        Specification<AuditLog> spec = (root, query, cb) -> cb.equal(root.get("username"), username);
+        if (action != null && !action.isEmpty()) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("action"), action));
+        }
+        if (resourceType != null && !resourceType.isEmpty()) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("resourceType"), resourceType));
+        }
+        if (from != null) {
+            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("timestamp"), from));
+        }
+        if (to != null) {
+            spec = spec.and((root, query, cb) -> cb.lessThan(root.get("timestamp"), to));
+        }
+        if (cursor != null && !cursor.isEmpty()) {
+            Cursor after = Cursor.decode(cursor);
+            spec = spec.and((root, query, cb) -> cb.or(
+                    cb.lessThan(root.get("timestamp"), after.timestamp()),
+                    cb.and(cb.equal(root.get("timestamp"), after.timestamp()),
+                            cb.lessThan(root.get("id"), after.id()))));
+        }
+
+        // One extra row tells whether another page exists without a count query
+        List<AuditLog> rows = auditLogRepository.findBy(spec,
+                query -> query.sortBy(NEWEST_FIRST).limit(pageSize + 1).all());
+
+        AuditPageResponse page = new AuditPageResponse();
+        for (AuditLog row : rows.subList(0, Math.min(pageSize, rows.size()))) {
+            page.getItems().add(mapToResponse(row));
+        }
+        if (rows.size() > pageSize) {
+            AuditLog last = rows.get(pageSize - 1);
+            page.setNextCursor(new Cursor(last.getTimestamp(), last.getId()).encode());
+        }
+        return page;
+    }
+
+    @Transactional(readOnly = true)
+    public List<AuditActivityResponse> getMyActivity(LocalDate from, LocalDate to) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(30);
+
+        List<AuditActivityResponse> activity = new ArrayList<>();
+        for (AuditDailyRollup rollup : auditDailyRollupRepository.findByUsernameAndDayBetweenOrderByDayAsc(username,
+                start, end)) {
+            AuditActivityResponse response = new AuditActivityResponse();
+            response.setDay(rollup.getDay());
+            response.setAction(rollup.getAction());
+            response.setResourceType(rollup.getResourceType());
+            response.setCount(rollup.getEventCount());
+            activity.add(response);
+        }
+        return activity;
+    }
+
+    // Recomputes yesterday and today (late rows for yesterday are still picked up); an empty rollup table is
+    // backfilled from all raw rows. Also called by AuditRetentionService before partitions are archived.
+    @Scheduled(fixedDelayString = "${app.audit.rollup-interval-ms:900000}")
+    @Transactional
+    public void refreshRollups() {
+        LocalDateTime from = auditDailyRollupRepository.count() == 0
+                ? LocalDateTime.of(1970, 1, 1, 0, 0)
+                : LocalDate.now().minusDays(1).atStartOfDay();
+        int rows = auditDailyRollupRepository.rollUpSince(from);
+        logger.debug("Refreshed {} audit rollup rows since {}", rows, from);
+    }
+
+    private static AuditLogResponse mapToResponse(AuditLog log) {
+        AuditLogResponse response = new AuditLogResponse();
+        response.setId(log.getId());
+        response.setAction(log.getAction());
+        response.setResourceType(log.getResourceType());
+        response.setResourceId(log.getResourceId());
+        response.setDetails(log.getDetails());
+        response.setTimestamp(log.getTimestamp());
+        return response;
+    }
+
+    // Opaque to clients: Base64url of "<timestamp>|<id>"
+    private record Cursor(LocalDateTime timestamp, Long id) {
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((timestamp + "|" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                        .split("\\|");
+                return new Cursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+            } catch (RuntimeException e) {
+                throw new BadRequestException("Invalid cursor");
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.passkind.backend.service;
+
+import com.passkind.backend.dto.BreachScanResponse;
+import com.passkind.backend.dto.BreachedSecretResponse;
+import com.passkind.backend.entity.Secret;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Offline breached-password check against a locally supplied corpus (see BreachCorpus); values never leave the
+// server. Without app.breach.corpus-path the check is off and callers get "not available" rather than "clean".
+@Service
+public class BreachCheckService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BreachCheckService.class);
+
+    private final SecretService secretService;
+    private final BreachCorpus corpus;
+    private final Counter breached;
+    private final Counter clean;
+
+    public BreachCheckService(SecretService secretService, MeterRegistry meterRegistry,
+            @Value("${app.breach.corpus-path:}") String corpusPath,
+            @Value("${app.breach.algorithm:sha1}") String algorithm) throws IOException {
+        this.secretService = secretService;
+        if (corpusPath.isBlank()) {
+            this.corpus = null;
+            logger.info("No breach corpus configured; breached-password checks are off");
+        } else {
+            this.corpus = BreachCorpus.open(Path.of(corpusPath),
+                    BreachCorpus.Algorithm.valueOf(algorithm.trim().toUpperCase(Locale.ROOT)));
+            logger.info("Mapped {} breach corpus {} ({} bytes)", corpus.getAlgorithm(), corpusPath, corpus.getSize());
+        }
+        this.breached = lookupCounter(meterRegistry, "breached");
+        this.clean = lookupCounter(meterRegistry, "clean");
+    }
+
+    public boolean isAvailable() {
+        return corpus != null;
+    }
+
+    // Times the value was seen in breaches; null when there is no corpus or no value to check
+    public Long check(String value) {
+        if (corpus == null || value == null || value.isEmpty()) {
+            return null;
+        }
+        long count = corpus.count(value);
+        (count > 0 ? breached : clean).increment();
+        return count;
+    }
+
+    // Every secret the caller owns, decrypted in one batch; only the breached ones are listed
+    public BreachScanResponse scanMySecrets() throws Exception {
+        BreachScanResponse response = new BreachScanResponse();
+        if (corpus == null) {
+            return response;
+        }
+        response.setAvailable(true);
+        List<Secret> secrets = secretService.getMySecrets();
+        Map<java.util.UUID, String> values = secretService.decryptValues(secrets);
+        for (Secret secret : secrets) {
+            Long count = check(values.get(secret.getId()));
+            if (count != null && count > 0) {
+                BreachedSecretResponse item = new BreachedSecretResponse();
+                item.setId(secret.getId());
+                item.setName(secret.getName());
+                item.setCount(count);
+                response.getBreached().add(item);
+            }
+        }
+        response.setScanned(secrets.size());
+        return response;
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("passkind.breach.checks").tag("result", result)
+                .description("Values looked up in the breach corpus").register(meterRegistry);
+    }
+}
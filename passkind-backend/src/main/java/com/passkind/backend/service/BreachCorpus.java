@@ -0,0 +1,226 @@
+package com.passkind.backend.service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+// A breached-password corpus in the Have I Been Pwned download format: one "HASH:COUNT" line per hash, sorted by
+// hash (the "ordered by hash" SHA-1 or NTLM files). The file is memory-mapped and binary-searched in place, so a
+// multi-gigabyte corpus costs page cache rather than heap, and a lookup reads about log2(lines) lines of it.
+public final class BreachCorpus {
+
+    public enum Algorithm {
+        SHA1(20), NTLM(16);
+
+        private final int hexLength;
+
+        Algorithm(int digestLength) {
+            this.hexLength = digestLength * 2;
+        }
+
+        public byte[] digest(String password) {
+            if (this == NTLM) {
+                return md4(password.getBytes(StandardCharsets.UTF_16LE));
+            }
+            try {
+                return MessageDigest.getInstance("SHA-1").digest(password.getBytes(StandardCharsets.UTF_8));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    // A single mapping is capped at 2 GB; 1 GB chunks keep the offset arithmetic to shifts and masks
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+    private static final HexFormat HEX = HexFormat.of().withUpperCase();
+
+    private final Algorithm algorithm;
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+
+    private BreachCorpus(Algorithm algorithm, MappedByteBuffer[] chunks, long size) {
+        this.algorithm = algorithm;
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    public static BreachCorpus open(Path path, Algorithm algorithm) throws IOException {
+        // The mappings stay valid once the channel is closed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++) {
+                long position = (long) i << CHUNK_BITS;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(CHUNK_MASK + 1, size - position));
+            }
+            BreachCorpus corpus = new BreachCorpus(algorithm, chunks, size);
+            corpus.checkFormat(path);
+            return corpus;
+        }
+    }
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    // Times the password was seen in breaches, 0 if the corpus does not list it
+    public long count(String password) {
+        return countHash(algorithm.digest(password));
+    }
+
+    public long countHash(byte[] hash) {
+        byte[] key = HEX.formatHex(hash).getBytes(StandardCharsets.US_ASCII);
+        // Invariant: low is a line start, and the key's line, if any, starts in [low, high)
+        long low = 0;
+        long high = size;
+        while (low < high) {
+            long line = lineStart((low + high) >>> 1, low);
+            int cmp = compare(line, key);
+            if (cmp == 0) {
+                return parseCount(line + key.length);
+            }
+            if (cmp < 0) {
+                low = nextLine(line);
+            } else {
+                high = line;
+            }
+        }
+        return 0;
+    }
+
+    private byte byteAt(long position) {
+        return chunks[(int) (position >>> CHUNK_BITS)].get((int) (position & CHUNK_MASK));
+    }
+
+    private long lineStart(long position, long floor) {
+        while (position > floor && byteAt(position - 1) != '\n') {
+            position--;
+        }
+        return position;
+    }
+
+    private long nextLine(long position) {
+        while (position < size && byteAt(position++) != '\n') {
+            // scan
+        }
+        return position;
+    }
+
+    // Hash of the line at `line` against the upper-case hex key; lower-case corpora compare the same
+    private int compare(long line, byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (line + i >= size) {
+                return -1;
+            }
+            int b = byteAt(line + i);
+            if (b >= 'a' && b <= 'f') {
+                b -= 'a' - 'A';
+            }
+            if (b != key[i]) {
+                return b < key[i] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    // Lines without a count (plain hash lists) count once
+    private long parseCount(long position) {
+        if (position >= size || byteAt(position) != ':') {
+            return 1;
+        }
+        long count = 0;
+        for (position++; position < size; position++) {
+            int b = byteAt(position);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            count = count * 10 + (b - '0');
+        }
+        return Math.max(count, 1);
+    }
+
+    // Catches the wrong file or algorithm at startup rather than as silent misses on every lookup
+    private void checkFormat(Path path) {
+        if (size == 0) {
+            throw new IllegalArgumentException("Breach corpus is empty: " + path);
+        }
+        long end = 0;
+        while (end < size && HexFormat.isHexDigit(byteAt(end))) {
+            end++;
+        }
+        if (end != algorithm.hexLength) {
+            throw new IllegalArgumentException("Breach corpus " + path + " does not start with a "
+                    + algorithm + " hash line");
+        }
+    }
+
+    // RFC 1320; the JDK ships no public MD4, which NTLM hashes need
+    private static byte[] md4(byte[] message) {
+        int blocks = (message.length + 8) / 64 + 1;
+        byte[] padded = Arrays.copyOf(message, blocks * 64);
+        padded[message.length] = (byte) 0x80;
+        long bits = (long) message.length * 8;
+        for (int i = 0; i < 8; i++) {
+            padded[padded.length - 8 + i] = (byte) (bits >>> (8 * i));
+        }
+
+        int a = 0x67452301;
+        int b = 0xefcdab89;
+        int c = 0x98badcfe;
+        int d = 0x10325476;
+        int[] x = new int[16];
+        for (int block = 0; block < blocks; block++) {
+            for (int i = 0; i < 16; i++) {
+                int o = block * 64 + i * 4;
+                x[i] = (padded[o] & 0xff) | (padded[o + 1] & 0xff) << 8 | (padded[o + 2] & 0xff) << 16
+                        | (padded[o + 3] & 0xff) << 24;
+            }
+            int aa = a;
+            int bb = b;
+            int cc = c;
+            int dd = d;
+            for (int i = 0; i < 16; i += 4) {
+                a = Integer.rotateLeft(a + ((b & c) | (~b & d)) + x[i], 3);
+                d = Integer.rotateLeft(d + ((a & b) | (~a & c)) + x[i + 1], 7);
+                c = Integer.rotateLeft(c + ((d & a) | (~d & b)) + x[i + 2], 11);
+                b = Integer.rotateLeft(b + ((c & d) | (~c & a)) + x[i + 3], 19);
+            }
+            for (int i = 0; i < 4; i++) {
+                a = Integer.rotateLeft(a + ((b & c) | (b & d) | (c & d)) + x[i] + 0x5a827999, 3);
+                d = Integer.rotateLeft(d + ((a & b) | (a & c) | (b & c)) + x[i + 4] + 0x5a827999, 5);
+                c = Integer.rotateLeft(c + ((d & a) | (d & b) | (a & b)) + x[i + 8] + 0x5a827999, 9);
+                b = Integer.rotateLeft(b + ((c & d) | (c & a) | (d & a)) + x[i + 12] + 0x5a827999, 13);
+            }
+            for (int i : new int[] { 0, 2, 1, 3 }) {
+                a = Integer.rotateLeft(a + (b ^ c ^ d) + x[i] + 0x6ed9eba1, 3);
+                d = Integer.rotateLeft(d + (a ^ b ^ c) + x[i + 8] + 0x6ed9eba1, 9);
+                c = Integer.rotateLeft(c + (d ^ a ^ b) + x[i + 4] + 0x6ed9eba1, 11);
+                b = Integer.rotateLeft(b + (c ^ d ^ a) + x[i + 12] + 0x6ed9eba1, 15);
+            }
+            a += aa;
+            b += bb;
+            c += cc;
+            d += dd;
+        }
+
+        byte[] digest = new byte[16];
+        int[] words = { a, b, c, d };
+        for (int i = 0; i < 16; i++) {
+            digest[i] = (byte) (words[i / 4] >>> (8 * (i % 4)));
+        }
+        return digest;
+    }
+}
@@ -0,0 +1,243 @@
+package com.passkind.backend.service;
+
+import com.passkind.backend.config.ReadWriteRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Keeps the in-process caches of several backend nodes in step over Postgres LISTEN/NOTIFY. A change is
+// announced after its transaction commits: it is evicted locally, then NOTIFY tells the other nodes, which evict
+// the same entry. A listener that lost its connection may have missed messages, so after reconnecting every
+// subscribed cache is cleared.
+@Service
+public class CacheInvalidationService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationService.class);
+    static final String WRITER_TOPIC = "writer";
+
+    private record Subscriber(Consumer<String> evict, Runnable evictAll) {
+    }
+
+    private final boolean enabled;
+    private final String channel;
+    private final long pollMillis;
+    private final long reconnectDelayMillis;
+    private final HikariDataSource primaryDataSource;
+    // Messages from this node are skipped on receipt; it evicted before publishing
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final Counter sent;
+    private final Counter received;
+    private final Counter reconnects;
+
+    private volatile boolean running;
+    private volatile Connection listenConnection;
+    private Thread listener;
+
+    public CacheInvalidationService(HikariDataSource primaryDataSource, ReadWriteRoutingDataSource routingDataSource,
+            MeterRegistry meterRegistry,
+            @Value("${app.invalidation.enabled:true}") boolean enabled,
+            @Value("${app.invalidation.channel:passkind_invalidation}") String channel,
+            @Value("${app.invalidation.poll-ms:1000}") long pollMillis,
+            @Value("${app.invalidation.reconnect-delay-ms:5000}") long reconnectDelayMillis) {
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalStateException("Invalid app.invalidation.channel: " + channel);
+        }
+        this.primaryDataSource = primaryDataSource;
+        this.enabled = enabled;
+        this.channel = channel;
+        this.pollMillis = pollMillis;
+        this.reconnectDelayMillis = reconnectDelayMillis;
+        this.sent = eventCounter(meterRegistry, "sent");
+        this.received = eventCounter(meterRegistry, "received");
+        this.reconnects = eventCounter(meterRegistry, "reconnect");
+
+        // Read-your-writes across nodes: a user's next request may land on a node that did not see the write
+        if (routingDataSource.hasReplicas()) {
+            routingDataSource.onWriterCommitted(username -> send(WRITER_TOPIC, username));
+            subscribe(WRITER_TOPIC, routingDataSource::markRecentWriter, () -> {
+            });
+        }
+    }
+
+    // evict gets the key of a single entry; evictAll runs for whole-topic messages and after a reconnect
+    public void subscribe(String topic, Consumer<String> evict, Runnable evictAll) {
+        if (subscribers.putIfAbsent(topic, new Subscriber(evict, evictAll)) != null) {
+            throw new IllegalStateException("Topic already subscribed: " + topic);
+        }
+    }
+
+    // Evicts the entry here and on the other nodes once the current transaction commits (right away without
+    // one); a rollback publishes nothing. A null key stands for the whole topic.
+    public void publish(String topic, String key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evictLocally(topic, key);
+            send(topic, key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evictLocally(topic, key);
+                send(topic, key);
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startListening() {
+        if (!enabled) {
+            logger.info("Cache invalidation channel disabled; caches are only evicted on the node that changed them");
+            return;
+        }
+        running = true;
+        listener = new Thread(this::listen, "cache-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+        closeQuietly(listenConnection);
+    }
+
+    private void listen() {
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection connection = openListenConnection()) {
+                listenConnection = connection;
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                if (connectedBefore) {
+                    reconnects.increment();
+                    logger.info("Cache invalidation listener reconnected; clearing subscribed caches");
+                    subscribers.values().forEach(subscriber -> subscriber.evictAll().run());
+                }
+                connectedBefore = true;
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) pollMillis);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            receive(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                logger.warn("Cache invalidation listener lost its connection, retrying in {} ms: {}",
+                        reconnectDelayMillis, e.getMessage());
+                try {
+                    Thread.sleep(reconnectDelayMillis);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            } finally {
+                listenConnection = null;
+            }
+        }
+    }
+
+    // A connection of its own: LISTEN ties up the session for good, which would take a slot from the pool
+    private Connection openListenConnection() throws SQLException {
+        Properties properties = new Properties();
+        properties.putAll(primaryDataSource.getDataSourceProperties());
+        if (primaryDataSource.getUsername() != null) {
+            properties.setProperty("user", primaryDataSource.getUsername());
+        }
+        if (primaryDataSource.getPassword() != null) {
+            properties.setProperty("password", primaryDataSource.getPassword());
+        }
+        properties.setProperty("ApplicationName", "passkind-invalidation");
+        return DriverManager.getConnection(primaryDataSource.getJdbcUrl(), properties);
+    }
+
+    // Payload: "<node>:<topic>" or "<node>:<topic>:<key>"
+    private void receive(String payload) {
+        String[] parts = payload.split(":", 3);
+        if (parts.length < 2 || parts[0].equals(nodeId)) {
+            return;
+        }
+        received.increment();
+        evictLocally(parts[1], parts.length == 3 ? parts[2] : null);
+    }
+
+    private void evictLocally(String topic, String key) {
+        Subscriber subscriber = subscribers.get(topic);
+        if (subscriber == null) {
+            return;
+        }
+        if (key == null) {
+            subscriber.evictAll().run();
+        } else {
+            subscriber.evict().accept(key);
+        }
+    }
+
+    // Autocommit statement on a pool connection, never the caller's: this runs after the caller's commit
+    private void send(String topic, String key) {
+        if (!enabled) {
+            return;
+        }
+        String payload = nodeId + ":" + topic + (key != null ? ":" + key : "");
+        try (Connection connection = primaryDataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            statement.setString(1, channel);
+            statement.setString(2, payload);
+            statement.execute();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+            sent.increment();
+        } catch (SQLException e) {
+            // Other nodes fall back on their cache TTLs
+            logger.warn("Could not publish cache invalidation for {}: {}", topic, e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.debug("Closing the invalidation listener connection failed: {}", e.getMessage());
+        }
+    }
+
+    private static Counter eventCounter(MeterRegistry meterRegistry, String direction) {
+        return Counter.builder("passkind.invalidation.events").tag("direction", direction)
+                .description("Cache invalidation messages exchanged between backend nodes")
+                .register(meterRegistry);
+    }
+}
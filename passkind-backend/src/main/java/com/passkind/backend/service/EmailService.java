@@ -1,5 +1,7 @@
 package com.passkind.backend.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
@@ -11,6 +13,7 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class EmailService {
     private final JavaMailSender mailSender;
+    private final MeterRegistry meterRegistry;
 
     public void sendOtpEmail(String toEmail, String otpCode) throws MessagingException {
         MimeMessage message = mailSender.createMimeMessage();
@@ -95,7 +98,18 @@ public class EmailService {
                 .formatted(otpCode);
 
         helper.setText(htmlContent, true);
-        mailSender.send(message);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+        try {
+            mailSender.send(message);
+            outcome = "success";
+        } finally {
+            sample.stop(Timer.builder("passkind.email.dispatch")
+                    .description("SMTP dispatch latency for OTP emails")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
     }
 
 }
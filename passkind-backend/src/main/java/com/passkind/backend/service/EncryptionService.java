@@ -1,63 +1,192 @@
 package com.passkind.backend.service;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.passkind.backend.entity.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 @Service
 public class EncryptionService {
 
-    @Value("${ENCRYPTION_KEY}")
-    private String encryptionKey;
-
     private static final String ALGORITHM = "AES/GCM/NoPadding";
     private static final int GCM_TAG_LENGTH = 128;
     private static final int GCM_IV_LENGTH = 12;
+    private static final int KEY_ID_LENGTH = 16;
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    // Column format (bytea): version || dataKeyId || iv || ciphertext+tag.
+    // Text envelope (history snapshots, legacy rows): "v1:" + Base64(dataKeyId || iv || ciphertext+tag).
+    // Legacy values are plain Base64(iv || ciphertext+tag) under ENCRYPTION_KEY; ':' never occurs in Base64.
+    private static final byte BINARY_VERSION = 1;
+    private static final int BINARY_HEADER_LENGTH = 1;
+    private static final String ENVELOPE_PREFIX = "v1:";
+
+    private final KeyManagementService keyManagementService;
+    private final Timer encryptTimer;
+    private final Timer decryptTimer;
 
-    public String encrypt(String data) throws Exception {
+    public EncryptionService(KeyManagementService keyManagementService, MeterRegistry meterRegistry) {
+        this.keyManagementService = keyManagementService;
+        this.encryptTimer = Timer.builder("passkind.encryption").tag("operation", "encrypt")
+                .description("AES-GCM secret encryption latency").register(meterRegistry);
+        this.decryptTimer = Timer.builder("passkind.encryption").tag("operation", "decrypt")
+                .description("AES-GCM secret decryption latency").register(meterRegistry);
+    }
+
+    public byte[] encrypt(String data, User owner) throws Exception {
         if (data == null)
             return null;
 
-        byte[] iv = new byte[GCM_IV_LENGTH];
-        new SecureRandom().nextBytes(iv);
+        return encryptTimer.recordCallable(() -> {
+            byte[] envelope = seal(data, keyManagementService.activeKey(owner), BINARY_HEADER_LENGTH);
+            envelope[0] = BINARY_VERSION;
+            return envelope;
+        });
+    }
 
-        SecretKey key = new SecretKeySpec(encryptionKey.getBytes(StandardCharsets.UTF_8), "AES");
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
-        GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-        cipher.init(Cipher.ENCRYPT_MODE, key, spec);
+    // Text envelope for ciphertext kept inside JSON (history snapshots)
+    public String encryptToText(String data, User owner) throws Exception {
+        if (data == null)
+            return null;
 
-        byte[] cipherText = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
-        byte[] encryptedData = new byte[iv.length + cipherText.length];
-        System.arraycopy(iv, 0, encryptedData, 0, iv.length);
-        System.arraycopy(cipherText, 0, encryptedData, iv.length, cipherText.length);
+        return encryptTimer.recordCallable(() -> ENVELOPE_PREFIX
+                + Base64.getEncoder().encodeToString(seal(data, keyManagementService.activeKey(owner), 0)));
+    }
+
+    // Decrypts straight out of the column buffer: IV and ciphertext are read by offset, never copied
+    public String decrypt(byte[] encryptedData) throws Exception {
+        if (encryptedData == null)
+            return null;
 
-        return Base64.getEncoder().encodeToString(encryptedData);
+        return decryptTimer.recordCallable(() -> open(encryptedData, versionedOffset(encryptedData)));
+    }
+
+    // Binary envelopes decrypted as a batch, in order: one Cipher instance re-initialised per row and one
+    // data key lookup per distinct key
+    public List<String> decryptAll(List<byte[]> encryptedData) throws Exception {
+        Cipher cipher = Cipher.getInstance(ALGORITHM);
+        Map<UUID, SecretKey> keys = new HashMap<>();
+        List<String> plainTexts = new ArrayList<>(encryptedData.size());
+        for (byte[] envelope : encryptedData) {
+            int offset = versionedOffset(envelope);
+            SecretKey key = keys.computeIfAbsent(readKeyId(envelope, offset), keyManagementService::dataKey);
+            plainTexts.add(decryptTimer.recordCallable(
+                    () -> decrypt(cipher, key, envelope, offset + KEY_ID_LENGTH)));
+        }
+        return plainTexts;
     }
 
     public String decrypt(String encryptedData) throws Exception {
         if (encryptedData == null)
             return null;
 
-        byte[] decodedData = Base64.getDecoder().decode(encryptedData);
-        byte[] iv = new byte[GCM_IV_LENGTH];
-        System.arraycopy(decodedData, 0, iv, 0, iv.length);
+        return decryptTimer.recordCallable(() -> {
+            if (encryptedData.startsWith(ENVELOPE_PREFIX)) {
+                return open(decodeEnvelope(encryptedData), 0);
+            }
+            byte[] decodedData = Base64.getDecoder().decode(encryptedData);
+            return decrypt(Cipher.getInstance(ALGORITHM), keyManagementService.legacyKey(), decodedData, 0);
+        });
+    }
+
+    public UUID keyIdOf(byte[] encryptedData) {
+        if (encryptedData == null) {
+            return null;
+        }
+        return readKeyId(encryptedData, versionedOffset(encryptedData));
+    }
+
+    // Data key id from the text header, or null for legacy values
+    public UUID keyIdOf(String encryptedData) {
+        if (encryptedData == null || !encryptedData.startsWith(ENVELOPE_PREFIX)) {
+            return null;
+        }
+        return readKeyId(decodeEnvelope(encryptedData), 0);
+    }
 
-        byte[] cipherText = new byte[decodedData.length - iv.length];
-        System.arraycopy(decodedData, iv.length, cipherText, 0, cipherText.length);
+    // Format conversions that need no key: only the header and the encoding change
+    public String toText(byte[] encryptedData) {
+        int offset = versionedOffset(encryptedData);
+        return ENVELOPE_PREFIX + Base64.getEncoder().encodeToString(
+                Arrays.copyOfRange(encryptedData, offset, encryptedData.length));
+    }
+
+    // Null for legacy values, which carry no key id and must be re-encrypted instead
+    public byte[] toBinary(String encryptedData) {
+        if (encryptedData == null || !encryptedData.startsWith(ENVELOPE_PREFIX)) {
+            return null;
+        }
+        byte[] envelope = decodeEnvelope(encryptedData);
+        byte[] binary = new byte[BINARY_HEADER_LENGTH + envelope.length];
+        binary[0] = BINARY_VERSION;
+        System.arraycopy(envelope, 0, binary, BINARY_HEADER_LENGTH, envelope.length);
+        return binary;
+    }
+
+    // Envelope with `headerLength` bytes reserved in front for the caller
+    private byte[] seal(String data, KeyManagementService.ActiveKey activeKey, int headerLength) throws Exception {
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        SECURE_RANDOM.nextBytes(iv);
 
-        SecretKey key = new SecretKeySpec(encryptionKey.getBytes(StandardCharsets.UTF_8), "AES");
         Cipher cipher = Cipher.getInstance(ALGORITHM);
         GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
+        cipher.init(Cipher.ENCRYPT_MODE, activeKey.key(), spec);
+
+        byte[] plainText = data.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer encryptedData = ByteBuffer.allocate(headerLength + KEY_ID_LENGTH + iv.length
+                + cipher.getOutputSize(plainText.length));
+        encryptedData.position(headerLength);
+        encryptedData.putLong(activeKey.id().getMostSignificantBits());
+        encryptedData.putLong(activeKey.id().getLeastSignificantBits());
+        encryptedData.put(iv);
+        cipher.doFinal(ByteBuffer.wrap(plainText), encryptedData);
+
+        return encryptedData.array();
+    }
+
+    // Envelope starting at `offset`: dataKeyId || iv || ciphertext+tag
+    private String open(byte[] envelope, int offset) throws Exception {
+        SecretKey key = keyManagementService.dataKey(readKeyId(envelope, offset));
+        return decrypt(Cipher.getInstance(ALGORITHM), key, envelope, offset + KEY_ID_LENGTH);
+    }
+
+    // iv || ciphertext+tag starting at `offset`
+    private static String decrypt(Cipher cipher, SecretKey key, byte[] buffer, int offset) throws Exception {
+        GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, buffer, offset, GCM_IV_LENGTH);
         cipher.init(Cipher.DECRYPT_MODE, key, spec);
 
-        byte[] plainText = cipher.doFinal(cipherText);
+        int cipherTextOffset = offset + GCM_IV_LENGTH;
+        byte[] plainText = cipher.doFinal(buffer, cipherTextOffset, buffer.length - cipherTextOffset);
         return new String(plainText, StandardCharsets.UTF_8);
     }
+
+    private static int versionedOffset(byte[] encryptedData) {
+        if (encryptedData.length == 0 || encryptedData[0] != BINARY_VERSION) {
+            throw new IllegalArgumentException("Unsupported ciphertext version");
+        }
+        return BINARY_HEADER_LENGTH;
+    }
+
+    private static UUID readKeyId(byte[] envelope, int offset) {
+        ByteBuffer header = ByteBuffer.wrap(envelope, offset, KEY_ID_LENGTH);
+        return new UUID(header.getLong(), header.getLong());
+    }
+
+    private static byte[] decodeEnvelope(String encryptedData) {
+        return Base64.getDecoder().decode(encryptedData.substring(ENVELOPE_PREFIX.length()));
+    }
 }
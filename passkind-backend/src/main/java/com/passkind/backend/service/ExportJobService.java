@@ -0,0 +1,418 @@
+package com.passkind.backend.service;
+
+import com.passkind.backend.dto.ExportJobResponse;
+import com.passkind.backend.entity.User;
+import com.passkind.backend.exception.BadRequestException;
+import com.passkind.backend.exception.ResourceNotFoundException;
+import com.passkind.backend.exception.ServiceUnavailableException;
+import com.passkind.backend.metrics.ExportMetrics;
+import com.passkind.backend.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Vault exports as background jobs, so a large vault cannot hold a request past proxy timeouts. Jobs run on a
+// bounded pool (a full queue is refused rather than buffered), write their artifact to app.export.dir and are
+// tracked in export_jobs, so any node can report progress. Artifacts are encrypted at rest: the Excel workbook
+// already is, with the user's password, and is sent as is; JSON is encrypted with AES-CTR under a per-job key
+// (stored wrapped with the owner's data key), which keeps every byte addressable for range requests.
+// Jobs and files are deleted once expired; a job whose node stopped mid-run stays RUNNING until then.
+@Service
+public class ExportJobService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportJobService.class);
+    public static final String EXCEL = "excel";
+    public static final String JSON = "json";
+    private static final String FILE_SUFFIX = ".export";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String FILE_CIPHER = "AES/CTR/NoPadding";
+    private static final int KEY_BYTES = 32;
+    private static final int BLOCK_BYTES = 16;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    // Writes the export to out, reporting progress; returns the number of secrets written
+    @FunctionalInterface
+    public interface Task {
+        int write(OutputStream out, Progress progress) throws Exception;
+    }
+
+    public static final class Progress {
+        private volatile Integer total;
+        private final AtomicInteger processed = new AtomicInteger();
+
+        public void setTotal(int total) {
+            this.total = total;
+        }
+
+        public void advance() {
+            processed.incrementAndGet();
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+    private final EncryptionService encryptionService;
+    private final ExportMetrics exportMetrics;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor executor;
+    private final Path exportDir;
+    private final Duration ttl;
+    // Jobs running on this node; their progress is fresher here than in the table
+    private final Map<UUID, Progress> running = new ConcurrentHashMap<>();
+
+    public ExportJobService(JdbcTemplate jdbcTemplate, UserRepository userRepository,
+            EncryptionService encryptionService, ExportMetrics exportMetrics,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${app.export.dir:${java.io.tmpdir}/passkind-exports}") String exportDir,
+            @Value("${app.export.workers:2}") int workers,
+            @Value("${app.export.queue-capacity:20}") int queueCapacity,
+            @Value("${app.export.ttl-minutes:60}") long ttlMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.encryptionService = encryptionService;
+        this.exportMetrics = exportMetrics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.exportDir = Paths.get(exportDir);
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "export-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Gauge.builder("passkind.export.jobs", executor, pool -> pool.getQueue().size()).tag("state", "queued")
+                .description("Export jobs on this node").register(meterRegistry);
+        Gauge.builder("passkind.export.jobs", executor, ThreadPoolExecutor::getActiveCount).tag("state", "running")
+                .description("Export jobs on this node").register(meterRegistry);
+    }
+
+    public ExportJobResponse submit(String username, String format, Task task) {
+        User owner = userRepository.findByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found: " + username));
+        UUID id = UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update("INSERT INTO export_jobs (id, user_id, format, status, created_at, expires_at) "
+                + "VALUES (?, ?, ?, 'QUEUED', ?, ?)", id, owner.getId(), format, now, now.plus(ttl));
+        Progress progress = new Progress();
+        running.put(id, progress);
+        try {
+            executor.execute(() -> run(id, owner, format, task, progress));
+        } catch (RejectedExecutionException e) {
+            running.remove(id);
+            jdbcTemplate.update("DELETE FROM export_jobs WHERE id = ?", id);
+            throw new ServiceUnavailableException("Too many exports in progress, please try again shortly");
+        }
+        return get(id, username);
+    }
+
+    public ExportJobResponse get(UUID id, String username) {
+        List<ExportJobResponse> jobs = jdbcTemplate.query("SELECT id, format, status, total, processed, "
+                + "size_bytes, error, created_at, finished_at, expires_at FROM export_jobs "
+                + "WHERE id = ? AND user_id = (SELECT id FROM users WHERE username = ?) AND expires_at >= ?",
+                (rs, rowNum) -> {
+                    ExportJobResponse job = new ExportJobResponse();
+                    job.setId(rs.getObject("id", UUID.class));
+                    job.setFormat(rs.getString("format"));
+                    job.setStatus(rs.getString("status"));
+                    job.setTotal(rs.getObject("total", Integer.class));
+                    job.setProcessed(rs.getInt("processed"));
+                    job.setSizeBytes(rs.getObject("size_bytes", Long.class));
+                    job.setError(rs.getString("error"));
+                    job.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+                    job.setFinishedAt(rs.getObject("finished_at", LocalDateTime.class));
+                    job.setExpiresAt(rs.getObject("expires_at", LocalDateTime.class));
+                    return job;
+                }, id, username, LocalDateTime.now());
+        if (jobs.isEmpty()) {
+            throw new ResourceNotFoundException("Export job not found");
+        }
+        ExportJobResponse job = jobs.get(0);
+        Progress progress = running.get(id);
+        if (progress != null && !"COMPLETED".equals(job.getStatus())) {
+            job.setTotal(progress.total);
+            job.setProcessed(progress.processed.get());
+        }
+        return job;
+    }
+
+    // Removes the job and its file; a job still running finishes, then discards its file
+    public void delete(UUID id, String username) {
+        int deleted = jdbcTemplate.update("DELETE FROM export_jobs "
+                + "WHERE id = ? AND user_id = (SELECT id FROM users WHERE username = ?)", id, username);
+        if (deleted == 0) {
+            throw new ResourceNotFoundException("Export job not found");
+        }
+        deleteQuietly(file(id));
+    }
+
+    public ExportFile openFile(UUID id, String username) {
+        ExportJobResponse job = get(id, username);
+        if (!"COMPLETED".equals(job.getStatus())) {
+            throw new BadRequestException("Export job is " + job.getStatus().toLowerCase() + ", not completed");
+        }
+        Path path = file(id);
+        // Written on another node, unless app.export.dir is shared between nodes
+        if (!Files.isRegularFile(path)) {
+            throw new ResourceNotFoundException("Export file not found");
+        }
+        SecretKeySpec key = null;
+        byte[] iv = null;
+        String wrappedKey = jdbcTemplate.queryForObject("SELECT file_key FROM export_jobs WHERE id = ?",
+                String.class, id);
+        if (wrappedKey != null) {
+            try {
+                byte[] keyAndIv = Base64.getDecoder().decode(encryptionService.decrypt(wrappedKey));
+                key = new SecretKeySpec(keyAndIv, 0, KEY_BYTES, "AES");
+                iv = Arrays.copyOfRange(keyAndIv, KEY_BYTES, KEY_BYTES + BLOCK_BYTES);
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not unwrap export file key", e);
+            }
+        }
+        String extension = EXCEL.equals(job.getFormat()) ? ".xlsx" : ".json";
+        return new ExportFile(path, job.getSizeBytes(),
+                "passkind-vault-" + job.getCreatedAt().toLocalDate() + extension, key, iv);
+    }
+
+    // Persists the progress of this node's running jobs for polls that land on other nodes
+    @Scheduled(fixedDelayString = "${app.export.progress-flush-ms:1000}")
+    public void flushProgress() {
+        running.forEach((id, progress) -> jdbcTemplate.update("UPDATE export_jobs SET total = ?, processed = ? "
+                + "WHERE id = ? AND status = 'RUNNING'", progress.total, progress.processed.get(), id));
+    }
+
+    @Scheduled(fixedDelayString = "${app.export.cleanup-interval-ms:300000}")
+    public void deleteExpired() {
+        List<UUID> expired = jdbcTemplate.queryForList("DELETE FROM export_jobs WHERE expires_at < ? RETURNING id",
+                UUID.class, LocalDateTime.now());
+        expired.forEach(id -> deleteQuietly(file(id)));
+        // Files left without a job: the node stopped mid-export, or the job expired on another node
+        long cutoff = System.currentTimeMillis() - ttl.toMillis();
+        int orphans = 0;
+        if (Files.isDirectory(exportDir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(exportDir,
+                    "*" + FILE_SUFFIX + "*")) {
+                for (Path path : files) {
+                    if (Files.getLastModifiedTime(path).toMillis() < cutoff && deleteQuietly(path)) {
+                        orphans++;
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Could not sweep export directory {}: {}", exportDir, e.getMessage());
+            }
+        }
+        if (!expired.isEmpty() || orphans > 0) {
+            logger.info("Deleted {} expired export jobs and {} leftover files", expired.size(), orphans);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private void run(UUID id, User owner, String format, Task task, Progress progress) {
+        Timer.Sample sample = exportMetrics.start();
+        Path temp = exportDir.resolve(id + FILE_SUFFIX + TEMP_SUFFIX);
+        try {
+            if (jdbcTemplate.update("UPDATE export_jobs SET status = 'RUNNING' WHERE id = ?", id) == 0) {
+                return;
+            }
+            Files.createDirectories(exportDir);
+            String wrappedKey = null;
+            int secrets;
+            try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_BYTES)) {
+                OutputStream out = file;
+                if (JSON.equals(format)) {
+                    byte[] keyAndIv = new byte[KEY_BYTES + BLOCK_BYTES];
+                    SECURE_RANDOM.nextBytes(keyAndIv);
+                    wrappedKey = encryptionService.encryptToText(Base64.getEncoder().encodeToString(keyAndIv), owner);
+                    Cipher cipher = Cipher.getInstance(FILE_CIPHER);
+                    cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(keyAndIv, 0, KEY_BYTES, "AES"),
+                            new IvParameterSpec(keyAndIv, KEY_BYTES, BLOCK_BYTES));
+                    out = new CipherOutputStream(file, cipher);
+                }
+                // One transaction for the whole read, as the request thread had with open-in-view
+                OutputStream sink = out;
+                secrets = transactionTemplate.execute(status -> {
+                    try {
+                        return task.write(sink, progress);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                out.close();
+            }
+            Path target = file(id);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            long size = Files.size(target);
+            LocalDateTime finished = LocalDateTime.now();
+            int updated = jdbcTemplate.update("UPDATE export_jobs SET status = 'COMPLETED', total = ?, "
+                    + "processed = ?, size_bytes = ?, file_key = ?, finished_at = ?, expires_at = ? WHERE id = ?",
+                    secrets, secrets, size, wrappedKey, finished, finished.plus(ttl), id);
+            if (updated == 0) {
+                // Deleted while running
+                deleteQuietly(target);
+            }
+            exportMetrics.record(format, sample, secrets, size);
+        } catch (Exception e) {
+            logger.error("Export job {} failed", id, e);
+            deleteQuietly(temp);
+            jdbcTemplate.update("UPDATE export_jobs SET status = 'FAILED', error = 'Export failed', finished_at = ? "
+                    + "WHERE id = ?", LocalDateTime.now(), id);
+        } finally {
+            running.remove(id);
+        }
+    }
+
+    private Path file(UUID id) {
+        return exportDir.resolve(id + FILE_SUFFIX);
+    }
+
+    private static boolean deleteQuietly(Path path) {
+        try {
+            return Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete export file {}: {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    // A finished artifact. transferTo sends any byte range of the plaintext: plain files go out through
+    // FileChannel.transferTo into a channel over the response stream (copied through a small heap buffer, the
+    // file is never read whole); encrypted ones are decrypted from the AES block containing the first byte.
+    public static final class ExportFile {
+        private final Path path;
+        private final long size;
+        private final String fileName;
+        private final SecretKeySpec key;
+        private final byte[] iv;
+
+        private ExportFile(Path path, long size, String fileName, SecretKeySpec key, byte[] iv) {
+            this.path = path;
+            this.size = size;
+            this.fileName = fileName;
+            this.key = key;
+            this.iv = iv;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public void transferTo(long position, long count, OutputStream out) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (key == null) {
+                    WritableByteChannel target = Channels.newChannel(out);
+                    long end = position + count;
+                    while (position < end) {
+                        long sent = channel.transferTo(position, end - position, target);
+                        if (sent <= 0 && position >= channel.size()) {
+                            throw new EOFException("Export file ended at " + position);
+                        }
+                        position += sent;
+                    }
+                } else {
+                    decryptTo(channel, position, count, out);
+                }
+            }
+        }
+
+        private void decryptTo(FileChannel channel, long position, long count, OutputStream out) throws IOException {
+            long block = position / BLOCK_BYTES;
+            int skip = (int) (position % BLOCK_BYTES);
+            Cipher cipher;
+            try {
+                cipher = Cipher.getInstance(FILE_CIPHER);
+                cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(counterAt(block)));
+            } catch (java.security.GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+            channel.position(block * BLOCK_BYTES);
+            InputStream in = Channels.newInputStream(channel);
+            byte[] buffer = new byte[BUFFER_BYTES];
+            byte[] plain = new byte[BUFFER_BYTES];
+            // Counted in plaintext: what the cipher returns may lag or differ from the ciphertext read
+            long remaining = count;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining + skip));
+                if (read < 0) {
+                    throw new EOFException("Export file ended early");
+                }
+                int decrypted;
+                try {
+                    decrypted = cipher.update(buffer, 0, read, plain, 0);
+                } catch (java.security.GeneralSecurityException e) {
+                    throw new IllegalStateException(e);
+                }
+                // The leading bytes of the first block may span more than one read
+                int from = Math.min(skip, decrypted);
+                skip -= from;
+                int length = (int) Math.min(decrypted - from, remaining);
+                out.write(plain, from, length);
+                remaining -= length;
+            }
+        }
+
+        // CTR counter for the given block: the IV plus the block number, as a 128-bit big-endian integer
+        private byte[] counterAt(long block) {
+            ByteBuffer counter = ByteBuffer.wrap(iv.clone());
+            long high = counter.getLong(0);
+            long low = counter.getLong(8);
+            long sum = low + block;
+            if (Long.compareUnsigned(sum, low) < 0) {
+                high++;
+            }
+            counter.putLong(0, high);
+            counter.putLong(8, sum);
+            return counter.array();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.passkind.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Prunes secret_history, whose snapshots (including the previous value) otherwise pile up for every rotation.
+// A snapshot is deleted once it is outside the newest keep-versions of its secret and older than keep-days;
+// with one limit set to 0 only the other applies. Secrets are walked in id order, a batch at a time, and each
+// batch is one set-based DELETE committed on its own, so locks stay short and autovacuum can keep up.
+// A pruned snapshot can no longer serve as the base of an If-Match update to its version, which then gets 412.
+@Service
+public class HistoryRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoryRetentionService.class);
+    // Arbitrary constant so only one node prunes at a time
+    private static final long ADVISORY_LOCK_KEY = 0x7061_7373_6869_7374L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int keepVersions;
+    private final int keepDays;
+    private final int batchSize;
+    private final long batchDelayMillis;
+    private final boolean vacuum;
+    private final Counter prunedRows;
+    private final Counter prunedBytes;
+
+    public HistoryRetentionService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+            @Value("${app.history.retention.enabled:true}") boolean enabled,
+            @Value("${app.history.retention.keep-versions:20}") int keepVersions,
+            @Value("${app.history.retention.keep-days:90}") int keepDays,
+            @Value("${app.history.retention.batch-size:500}") int batchSize,
+            @Value("${app.history.retention.batch-delay-ms:50}") long batchDelayMillis,
+            @Value("${app.history.retention.vacuum:true}") boolean vacuum) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled && (keepVersions > 0 || keepDays > 0);
+        this.keepVersions = keepVersions;
+        this.keepDays = keepDays;
+        this.batchSize = batchSize;
+        this.batchDelayMillis = batchDelayMillis;
+        this.vacuum = vacuum;
+        this.prunedRows = Counter.builder("passkind.history.pruned")
+                .description("Secret history snapshots deleted by the retention policy").register(meterRegistry);
+        this.prunedBytes = Counter.builder("passkind.history.pruned.bytes").baseUnit("bytes")
+                .description("Row size of the secret history snapshots deleted by the retention policy")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.history.retention.cron:0 45 3 * * *}")
+    public void prune() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                if (!tryLock(connection)) {
+                    logger.info("History retention already running on another node");
+                    return null;
+                }
+                try {
+                    pruneAll(connection);
+                } finally {
+                    unlock(connection);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            logger.error("History retention failed", e);
+        }
+    }
+
+    private void pruneAll(Connection connection) throws SQLException {
+        // Each batch is its own transaction
+        connection.setAutoCommit(true);
+        // Same clock as SecretHistory.modifiedAt
+        LocalDateTime cutoff = keepDays > 0
+                ? LocalDateTime.now(java.time.ZoneId.of("Asia/Kolkata")).minusDays(keepDays) : null;
+        long rows = 0;
+        long bytes = 0;
+        UUID after = null;
+        while (true) {
+            List<UUID> secretIds = nextSecrets(connection, after);
+            if (secretIds.isEmpty()) {
+                break;
+            }
+            long[] deleted = pruneRange(connection, after, secretIds.get(secretIds.size() - 1), cutoff);
+            rows += deleted[0];
+            bytes += deleted[1];
+            prunedRows.increment(deleted[0]);
+            prunedBytes.increment(deleted[1]);
+            after = secretIds.get(secretIds.size() - 1);
+            if (secretIds.size() < batchSize) {
+                break;
+            }
+            if (batchDelayMillis > 0) {
+                try {
+                    Thread.sleep(batchDelayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        logger.info("History retention deleted {} snapshots ({} bytes)", rows, bytes);
+        if (rows > 0 && vacuum) {
+            // Makes the space reusable now rather than whenever autovacuum gets to it; takes no exclusive lock
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("VACUUM (ANALYZE) secret_history");
+            }
+        }
+    }
+
+    // Keyset page over secrets.id
+    private List<UUID> nextSecrets(Connection connection, UUID after) throws SQLException {
+        String sql = "SELECT id FROM secrets" + (after != null ? " WHERE id > ?" : "") + " ORDER BY id LIMIT ?";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            if (after != null) {
+                statement.setObject(index++, after);
+            }
+            statement.setInt(index, batchSize);
+            List<UUID> ids = new ArrayList<>(batchSize);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getObject(1, UUID.class));
+                }
+            }
+            return ids;
+        }
+    }
+
+    // One DELETE for the history of every secret in (after, last]; returns {rows, bytes}
+    private long[] pruneRange(Connection connection, UUID after, UUID last, LocalDateTime cutoff)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder("WITH ranked AS (SELECT id, modified_at, row_number() OVER "
+                + "(PARTITION BY secret_id ORDER BY modified_at DESC NULLS LAST, id DESC) AS position "
+                + "FROM secret_history WHERE secret_id <= ?");
+        if (after != null) {
+            sql.append(" AND secret_id > ?");
+        }
+        sql.append("), deleted AS (DELETE FROM secret_history h USING ranked r WHERE h.id = r.id");
+        if (keepVersions > 0) {
+            sql.append(" AND r.position > ?");
+        }
+        if (cutoff != null) {
+            // Snapshots without a timestamp predate it and count as old
+            sql.append(" AND (r.modified_at IS NULL OR r.modified_at < ?)");
+        }
+        sql.append(" RETURNING pg_column_size(h.*) AS size) SELECT count(*), coalesce(sum(size), 0) FROM deleted");
+        try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+            int index = 1;
+            statement.setObject(index++, last);
+            if (after != null) {
+                statement.setObject(index++, after);
+            }
+            if (keepVersions > 0) {
+                statement.setInt(index++, keepVersions);
+            }
+            if (cutoff != null) {
+                statement.setTimestamp(index, Timestamp.valueOf(cutoff));
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return new long[] { rs.getLong(1), rs.getLong(2) };
+            }
+        }
+    }
+
+    private static boolean tryLock(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT pg_try_advisory_lock(" + ADVISORY_LOCK_KEY + ")")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    private static void unlock(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SELECT pg_advisory_unlock(" + ADVISORY_LOCK_KEY + ")");
+        }
+    }
+}
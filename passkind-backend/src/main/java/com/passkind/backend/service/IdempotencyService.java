@@ -0,0 +1,261 @@
+package com.passkind.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Remembers the responses of requests sent with an Idempotency-Key so retries get the same answer without
+// running again. Completed responses live in a size-bounded memory cache backed by the idempotency_keys table
+// (other nodes, restarts). A duplicate arriving while the first is still running waits on that request's
+// future on this node; on another node the table row acts as the claim and the duplicate is told to retry.
+// The claim row carries a lease that the executing node renews while the request runs, so only a claim whose
+// node stopped renewing it (died mid-request) is taken over, however long the request itself takes.
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+    private static final int OVERHEAD_BYTES = 256;
+
+    public record StoredResponse(String fingerprint, int status, Map<String, String> headers, byte[] body) {
+    }
+
+    public enum Outcome {
+        EXECUTE, REPLAY, MISMATCH, BUSY
+    }
+
+    // What the caller should do; for EXECUTE it must later pass the claim to complete() or release()
+    public static final class Claim {
+        private final Outcome outcome;
+        private final StoredResponse response;
+        private final Key key;
+        private final InFlight inFlight;
+
+        private Claim(Outcome outcome, StoredResponse response, Key key, InFlight inFlight) {
+            this.outcome = outcome;
+            this.response = response;
+            this.key = key;
+            this.inFlight = inFlight;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public StoredResponse getResponse() {
+            return response;
+        }
+    }
+
+    private record Key(String username, String idempotencyKey) {
+    }
+
+    private record InFlight(String fingerprint, CompletableFuture<StoredResponse> result) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Cache<Key, StoredResponse> completed;
+    private final Map<Key, InFlight> inFlight = new ConcurrentHashMap<>();
+    // Claims this node holds the row for, renewed by heartbeat()
+    private final Set<Key> leased = ConcurrentHashMap.newKeySet();
+    private final Duration ttl;
+    private final Duration waitTimeout;
+    private final Duration lease;
+    private final int maxBodyBytes;
+
+    public IdempotencyService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${app.idempotency.ttl-hours:24}") long ttlHours,
+            @Value("${app.idempotency.memory-mb:64}") long memoryMb,
+            @Value("${app.idempotency.max-body-kb:10240}") int maxBodyKb,
+            @Value("${app.idempotency.wait-timeout-seconds:30}") long waitTimeoutSeconds,
+            @Value("${app.idempotency.lease-seconds:60}") long leaseSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.waitTimeout = Duration.ofSeconds(waitTimeoutSeconds);
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.maxBodyBytes = maxBodyKb * 1024;
+        this.completed = Caffeine.newBuilder().maximumWeight(memoryMb * 1024 * 1024)
+                .weigher((Key key, StoredResponse response) -> response.body().length + OVERHEAD_BYTES)
+                .expireAfterWrite(ttl).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, "idempotency");
+    }
+
+    public Claim claim(String username, String idempotencyKey, String fingerprint) {
+        Key key = new Key(username, idempotencyKey);
+        // Second pass only when the request we waited for ended without a response worth keeping
+        for (int attempt = 0; attempt < 2; attempt++) {
+            StoredResponse done = find(key);
+            if (done != null) {
+                return answer(key, done, fingerprint);
+            }
+
+            InFlight mine = new InFlight(fingerprint, new CompletableFuture<>());
+            InFlight running = inFlight.putIfAbsent(key, mine);
+            if (running == null) {
+                // It may have completed between the lookup and taking the slot, here or on another node
+                done = find(key);
+                if (done == null) {
+                    if (claimRow(key, fingerprint)) {
+                        leased.add(key);
+                        return new Claim(Outcome.EXECUTE, null, key, mine);
+                    }
+                    done = find(key);
+                }
+                inFlight.remove(key, mine);
+                mine.result().complete(done);
+                return done != null ? answer(key, done, fingerprint) : new Claim(Outcome.BUSY, null, key, null);
+            }
+
+            if (!running.fingerprint().equals(fingerprint)) {
+                return new Claim(Outcome.MISMATCH, null, key, null);
+            }
+            try {
+                StoredResponse result = running.result().get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                if (result != null) {
+                    return new Claim(Outcome.REPLAY, result, key, null);
+                }
+            } catch (TimeoutException e) {
+                return new Claim(Outcome.BUSY, null, key, null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Claim(Outcome.BUSY, null, key, null);
+            } catch (ExecutionException e) {
+                // Not completed exceptionally by this class; treat like a failed first attempt
+            }
+        }
+        return new Claim(Outcome.BUSY, null, null, null);
+    }
+
+    // Keeps the response of an executed claim and hands it to waiting duplicates. Server errors and oversized
+    // bodies are not kept, so a retry runs again.
+    public void complete(Claim claim, int status, Map<String, String> headers, byte[] body) {
+        if (status >= 500 || body.length > maxBodyBytes) {
+            release(claim);
+            return;
+        }
+        StoredResponse response = new StoredResponse(claim.inFlight.fingerprint(), status, headers, body);
+        try {
+            jdbcTemplate.update("UPDATE idempotency_keys SET status = ?, headers = CAST(? AS jsonb), body = ? "
+                    + "WHERE username = ? AND idempotency_key = ?", status,
+                    objectMapper.writeValueAsString(headers), body, claim.key.username(),
+                    claim.key.idempotencyKey());
+        } catch (RuntimeException | JsonProcessingException e) {
+            // Still replayed from memory on this node
+            logger.warn("Could not persist idempotent response: {}", e.getMessage());
+        }
+        completed.put(claim.key, response);
+        leased.remove(claim.key);
+        inFlight.remove(claim.key, claim.inFlight);
+        claim.inFlight.result().complete(response);
+    }
+
+    // Gives the key up after a failed execution; waiting duplicates then run the request themselves
+    public void release(Claim claim) {
+        try {
+            jdbcTemplate.update("DELETE FROM idempotency_keys WHERE username = ? AND idempotency_key = ? "
+                    + "AND status IS NULL", claim.key.username(), claim.key.idempotencyKey());
+        } catch (RuntimeException e) {
+            logger.warn("Could not release idempotency key: {}", e.getMessage());
+        }
+        leased.remove(claim.key);
+        inFlight.remove(claim.key, claim.inFlight);
+        claim.inFlight.result().complete(null);
+    }
+
+    // Renews the leases of requests still running here; the interval must stay well below the lease
+    @Scheduled(fixedDelayString = "${app.idempotency.heartbeat-interval-ms:10000}")
+    public void heartbeat() {
+        if (leased.isEmpty()) {
+            return;
+        }
+        List<Object[]> keys = leased.stream()
+                .map(key -> new Object[] { (double) lease.toSeconds(), key.username(), key.idempotencyKey() })
+                .toList();
+        try {
+            jdbcTemplate.batchUpdate("UPDATE idempotency_keys SET lease_expires_at = now() + make_interval(secs => ?) "
+                    + "WHERE username = ? AND idempotency_key = ? AND status IS NULL", keys);
+        } catch (RuntimeException e) {
+            logger.warn("Could not renew idempotency leases: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.cleanup-interval-ms:3600000}")
+    public void deleteExpired() {
+        int deleted = jdbcTemplate.update("DELETE FROM idempotency_keys "
+                + "WHERE created_at < now() - make_interval(secs => ?)", (double) ttl.toSeconds());
+        if (deleted > 0) {
+            logger.info("Deleted {} expired idempotency keys", deleted);
+        }
+    }
+
+    private Claim answer(Key key, StoredResponse done, String fingerprint) {
+        return done.fingerprint().equals(fingerprint) ? new Claim(Outcome.REPLAY, done, key, null)
+                : new Claim(Outcome.MISMATCH, null, key, null);
+    }
+
+    private StoredResponse find(Key key) {
+        StoredResponse cached = completed.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        List<StoredResponse> rows = jdbcTemplate.query("SELECT fingerprint, status, headers, body "
+                + "FROM idempotency_keys WHERE username = ? AND idempotency_key = ? AND status IS NOT NULL "
+                + "AND created_at >= now() - make_interval(secs => ?)",
+                (rs, rowNum) -> new StoredResponse(rs.getString("fingerprint"), rs.getInt("status"),
+                        readHeaders(rs.getString("headers")), rs.getBytes("body")),
+                key.username(), key.idempotencyKey(), (double) ttl.toSeconds());
+        if (rows.isEmpty()) {
+            return null;
+        }
+        completed.put(key, rows.get(0));
+        return rows.get(0);
+    }
+
+    // The row marks the key as taken across nodes. An unfinished claim whose lease ran out is presumed
+    // abandoned (its node stopped renewing it) and taken over; expired rows are replaced.
+    private boolean claimRow(Key key, String fingerprint) {
+        double leaseSeconds = lease.toSeconds();
+        int inserted = jdbcTemplate.update("INSERT INTO idempotency_keys (username, idempotency_key, fingerprint, "
+                + "created_at, lease_expires_at) VALUES (?, ?, ?, now(), now() + make_interval(secs => ?)) "
+                + "ON CONFLICT DO NOTHING",
+                key.username(), key.idempotencyKey(), fingerprint, leaseSeconds);
+        if (inserted == 1) {
+            return true;
+        }
+        return jdbcTemplate.update("UPDATE idempotency_keys SET fingerprint = ?, status = NULL, headers = NULL, "
+                + "body = NULL, created_at = now(), lease_expires_at = now() + make_interval(secs => ?) "
+                + "WHERE username = ? AND idempotency_key = ? AND "
+                + "((status IS NULL AND lease_expires_at < now()) OR created_at < now() - make_interval(secs => ?))",
+                fingerprint, leaseSeconds, key.username(), key.idempotencyKey(), (double) ttl.toSeconds()) == 1;
+    }
+
+    private Map<String, String> readHeaders(String json) {
+        try {
+            return json == null ? Map.of() : objectMapper.readValue(json, new TypeReference<Map<String, String>>() {
+            });
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.passkind.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.passkind.backend.entity.DataKey;
+import com.passkind.backend.entity.User;
+import com.passkind.backend.repository.DataKeyRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Envelope encryption keys: per-user data keys wrapped by a master key, with unwrapped keys held in bounded caches
+@Service
+public class KeyManagementService {
+
+    private static final String ALGORITHM = "AES/GCM/NoPadding";
+    private static final int GCM_TAG_LENGTH = 128;
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int DATA_KEY_BITS = 256;
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+    private static final String ACTIVE_KEYS_TOPIC = "active-data-keys";
+
+    private final DataKeyRepository dataKeyRepository;
+    private final CacheInvalidationService cacheInvalidationService;
+    private final TransactionTemplate newTransaction;
+    private final SecretKey legacyKey;
+    private final Map<String, SecretKey> masterKeys = new HashMap<>();
+    private final String activeMasterKeyId;
+
+    private final Cache<UUID, SecretKey> dataKeys;
+    private final Cache<UUID, ActiveKey> activeKeys;
+
+    public KeyManagementService(DataKeyRepository dataKeyRepository, PlatformTransactionManager transactionManager,
+            CacheInvalidationService cacheInvalidationService,
+            @Value("${ENCRYPTION_KEY}") String legacyKey,
+            @Value("${app.encryption.master-keys:}") String masterKeys,
+            @Value("${app.encryption.active-master-key-id:default}") String activeMasterKeyId,
+            @Value("${app.encryption.data-key-cache-size:10000}") long cacheSize) {
+        this.dataKeyRepository = dataKeyRepository;
+        this.cacheInvalidationService = cacheInvalidationService;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.legacyKey = aesKey(legacyKey);
+
+        // Format: "id1:key1,id2:key2". Without it, ENCRYPTION_KEY doubles as the "default" master key.
+        if (masterKeys == null || masterKeys.isBlank()) {
+            this.masterKeys.put("default", this.legacyKey);
+        } else {
+            for (String entry : masterKeys.split(",")) {
+                String[] parts = entry.trim().split(":", 2);
+                if (parts.length != 2) {
+                    throw new IllegalStateException("Invalid app.encryption.master-keys entry: " + parts[0]);
+                }
+                this.masterKeys.put(parts[0], aesKey(parts[1]));
+            }
+        }
+        if (!this.masterKeys.containsKey(activeMasterKeyId)) {
+            throw new IllegalStateException("Active master key '" + activeMasterKeyId + "' is not configured");
+        }
+        this.activeMasterKeyId = activeMasterKeyId;
+
+        this.dataKeys = Caffeine.newBuilder().maximumSize(cacheSize).expireAfterAccess(Duration.ofMinutes(30)).build();
+        this.activeKeys = Caffeine.newBuilder().maximumSize(cacheSize).expireAfterAccess(Duration.ofMinutes(30))
+                .build();
+        // Unwrapped data keys never change, so only the active-key choice needs invalidating
+        cacheInvalidationService.subscribe(ACTIVE_KEYS_TOPIC, userId -> activeKeys.invalidate(UUID.fromString(userId)),
+                activeKeys::invalidateAll);
+    }
+
+    public record ActiveKey(UUID id, SecretKey key) {
+    }
+
+    public SecretKey legacyKey() {
+        return legacyKey;
+    }
+
+    public ActiveKey activeKey(User user) {
+        return activeKeys.get(user.getId(), userId -> dataKeyRepository
+                .findFirstByUser_IdAndActiveTrueOrderByCreatedAtDesc(userId)
+                .map(dataKey -> new ActiveKey(dataKey.getId(), dataKey(dataKey.getId())))
+                .orElseGet(() -> createDataKey(user)));
+    }
+
+    public SecretKey dataKey(UUID keyId) {
+        return dataKeys.get(keyId, id -> {
+            DataKey dataKey = dataKeyRepository.findById(id)
+                    .orElseThrow(() -> new IllegalStateException("Unknown data key: " + id));
+            return unwrap(dataKey);
+        });
+    }
+
+    // Retires every active data key on every node; new ones are created lazily on the next encrypt for each user
+    public int retireActiveDataKeys() {
+        Integer retired = newTransaction.execute(status -> dataKeyRepository.deactivateAll());
+        cacheInvalidationService.publish(ACTIVE_KEYS_TOPIC, null);
+        return retired != null ? retired : 0;
+    }
+
+    // Re-wraps data keys held under a non-active master key. Cheap: no secret ciphertext changes.
+    public int rewrapDataKeys() {
+        List<DataKey> stale = dataKeyRepository.findByMasterKeyIdNot(activeMasterKeyId);
+        for (DataKey dataKey : stale) {
+            SecretKey key = unwrap(dataKey);
+            newTransaction.executeWithoutResult(status -> {
+                dataKey.setWrappedKey(wrap(key, dataKey.getUser().getId()));
+                dataKey.setMasterKeyId(activeMasterKeyId);
+                dataKeyRepository.save(dataKey);
+            });
+        }
+        return stale.size();
+    }
+
+    private ActiveKey createDataKey(User user) {
+        try {
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(DATA_KEY_BITS, SECURE_RANDOM);
+            SecretKey key = generator.generateKey();
+
+            DataKey dataKey = new DataKey();
+            dataKey.setId(UUID.randomUUID());
+            dataKey.setUser(user);
+            dataKey.setWrappedKey(wrap(key, user.getId()));
+            dataKey.setMasterKeyId(activeMasterKeyId);
+            dataKey.setActive(true);
+            // Committed independently so a rolled-back caller never leaves ciphertext pointing at a missing key
+            newTransaction.executeWithoutResult(status -> dataKeyRepository.save(dataKey));
+
+            dataKeys.put(dataKey.getId(), key);
+            return new ActiveKey(dataKey.getId(), key);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to create data key for user " + user.getId(), e);
+        }
+    }
+
+    private String wrap(SecretKey key, UUID userId) {
+        try {
+            byte[] iv = new byte[GCM_IV_LENGTH];
+            SECURE_RANDOM.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance(ALGORITHM);
+            cipher.init(Cipher.ENCRYPT_MODE, masterKeys.get(activeMasterKeyId),
+                    new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+            // Binding the owner as AAD stops a wrapped key from being reassigned to another user's row
+            cipher.updateAAD(userId.toString().getBytes(StandardCharsets.UTF_8));
+            byte[] wrapped = cipher.doFinal(key.getEncoded());
+            return Base64.getEncoder().encodeToString(ByteBuffer.allocate(iv.length + wrapped.length)
+                    .put(iv).put(wrapped).array());
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to wrap data key", e);
+        }
+    }
+
+    private SecretKey unwrap(DataKey dataKey) {
+        SecretKey masterKey = masterKeys.get(dataKey.getMasterKeyId());
+        if (masterKey == null) {
+            throw new IllegalStateException("Master key '" + dataKey.getMasterKeyId() + "' is not configured");
+        }
+        try {
+            byte[] wrapped = Base64.getDecoder().decode(dataKey.getWrappedKey());
+            Cipher cipher = Cipher.getInstance(ALGORITHM);
+            cipher.init(Cipher.DECRYPT_MODE, masterKey, new GCMParameterSpec(GCM_TAG_LENGTH, wrapped, 0, GCM_IV_LENGTH));
+            cipher.updateAAD(dataKey.getUser().getId().toString().getBytes(StandardCharsets.UTF_8));
+            byte[] raw = cipher.doFinal(wrapped, GCM_IV_LENGTH, wrapped.length - GCM_IV_LENGTH);
+            return new SecretKeySpec(raw, "AES");
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to unwrap data key " + dataKey.getId(), e);
+        }
+    }
+
+    private static SecretKey aesKey(String raw) {
+        return new SecretKeySpec(raw.getBytes(StandardCharsets.UTF_8), "AES");
+    }
+}
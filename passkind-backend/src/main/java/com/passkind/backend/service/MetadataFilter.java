@@ -0,0 +1,77 @@
+package com.passkind.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.passkind.backend.exception.BadRequestException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Metadata conditions from ?meta= parameters, all of which must hold:
+// "key" (key exists), "key=value" (string equals) and "key=prefix*" (string starts with).
+// Rendered as the JSON arguments of SecretRepository.findAccessibleByMetadataBefore.
+class MetadataFilter {
+
+    private static final int MAX_CONDITIONS = 10;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final Map<String, String> equals = new LinkedHashMap<>();
+    private final List<String> keys = new ArrayList<>();
+    private final Map<String, String> prefixes = new LinkedHashMap<>();
+
+    static MetadataFilter parse(List<String> conditions) {
+        MetadataFilter filter = new MetadataFilter();
+        if (conditions == null) {
+            return filter;
+        }
+        if (conditions.size() > MAX_CONDITIONS) {
+            throw new BadRequestException("At most " + MAX_CONDITIONS + " metadata conditions");
+        }
+        for (String condition : conditions) {
+            int separator = condition.indexOf('=');
+            String key = (separator < 0 ? condition : condition.substring(0, separator)).trim();
+            if (key.isEmpty()) {
+                throw new BadRequestException("Invalid metadata condition: " + condition);
+            }
+            if (separator < 0) {
+                filter.keys.add(key);
+                continue;
+            }
+            String value = condition.substring(separator + 1);
+            if (value.endsWith("*")) {
+                // Prefix keys also go through the existence check, so a JSON null never matches
+                filter.keys.add(key);
+                filter.prefixes.put(key, value.substring(0, value.length() - 1));
+            } else if (filter.equals.putIfAbsent(key, value) != null && !filter.equals.get(key).equals(value)) {
+                throw new BadRequestException("Conflicting values for metadata key: " + key);
+            }
+        }
+        return filter;
+    }
+
+    boolean isEmpty() {
+        return equals.isEmpty() && keys.isEmpty() && prefixes.isEmpty();
+    }
+
+    String containsJson() {
+        return toJson(equals);
+    }
+
+    String keysJson() {
+        return toJson(keys);
+    }
+
+    String prefixesJson() {
+        return toJson(prefixes);
+    }
+
+    private static String toJson(Object value) {
+        try {
+            return JSON.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
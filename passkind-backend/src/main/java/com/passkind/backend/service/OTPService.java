@@ -3,6 +3,8 @@ package com.passkind.backend.service;
 import com.passkind.backend.entity.OTP;
 import com.passkind.backend.repository.OTPRepository;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -15,6 +17,8 @@ import org.springframework.transaction.annotation.Transactional;
 @RequiredArgsConstructor
 @Transactional
 public class OTPService {
+    private static final Logger logger = LoggerFactory.getLogger(OTPService.class);
+
     private final OTPRepository otpRepository;
     private final EmailService emailService;
 
@@ -34,7 +38,7 @@ public class OTPService {
         try {
             emailService.sendOtpEmail(email, otpCode);
         } catch (Exception e) {
-            System.err.println("Failed to send OTP email: " + e.getMessage());
+            logger.error("Failed to send OTP email: {}", e.getMessage());
             // Don't rethrow, allow registration to proceed
         }
     }
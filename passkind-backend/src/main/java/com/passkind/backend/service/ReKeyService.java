@@ -0,0 +1,269 @@
+package com.passkind.backend.service;
+
+import com.passkind.backend.dto.ReKeyProgress;
+import com.passkind.backend.entity.Secret;
+import com.passkind.backend.entity.SecretHistory;
+import com.passkind.backend.repository.SecretHistoryRepository;
+import com.passkind.backend.repository.SecretRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+// Background re-encryption of secrets and history snapshots under each owner's active data key.
+// Rows are keyset-paginated by id; each batch commits on its own, and at most `parallelism` batches are in flight.
+@Service
+public class ReKeyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReKeyService.class);
+    private static final UUID MIN_ID = new UUID(0L, 0L);
+
+    private final SecretRepository secretRepository;
+    private final SecretHistoryRepository secretHistoryRepository;
+    private final KeyManagementService keyManagementService;
+    private final EncryptionService encryptionService;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int parallelism;
+    private final long batchDelayMillis;
+    private final boolean migrateOnStartup;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicReference<String> state = new AtomicReference<>("IDLE");
+    private final AtomicReference<String> phase = new AtomicReference<>();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String error;
+
+    public ReKeyService(SecretRepository secretRepository, SecretHistoryRepository secretHistoryRepository,
+            KeyManagementService keyManagementService, EncryptionService encryptionService,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${app.encryption.rekey.batch-size:500}") int batchSize,
+            @Value("${app.encryption.rekey.parallelism:4}") int parallelism,
+            @Value("${app.encryption.rekey.batch-delay-ms:50}") long batchDelayMillis,
+            @Value("${app.encryption.migrate-on-startup:true}") boolean migrateOnStartup) {
+        this.secretRepository = secretRepository;
+        this.secretHistoryRepository = secretHistoryRepository;
+        this.keyManagementService = keyManagementService;
+        this.encryptionService = encryptionService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.batchDelayMillis = batchDelayMillis;
+        this.migrateOnStartup = migrateOnStartup;
+
+        Gauge.builder("passkind.rekey.rows", processed, AtomicLong::get).tag("status", "processed")
+                .register(meterRegistry);
+        Gauge.builder("passkind.rekey.rows", skipped, AtomicLong::get).tag("status", "skipped")
+                .register(meterRegistry);
+        Gauge.builder("passkind.rekey.rows", failed, AtomicLong::get).tag("status", "failed")
+                .register(meterRegistry);
+        Gauge.builder("passkind.rekey.rows", total, AtomicLong::get).tag("status", "total")
+                .register(meterRegistry);
+    }
+
+    // Starts a run unless one is already in progress; rotateDataKeys retires every user's current data key first
+    public ReKeyProgress start(boolean rotateDataKeys) {
+        if (!running.compareAndSet(false, true)) {
+            return progress();
+        }
+        state.set("RUNNING");
+        phase.set(null);
+        total.set(0);
+        processed.set(0);
+        skipped.set(0);
+        failed.set(0);
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+        error = null;
+
+        Thread coordinator = new Thread(() -> run(rotateDataKeys), "rekey-coordinator");
+        coordinator.setDaemon(true);
+        coordinator.start();
+        return progress();
+    }
+
+    // Moves Base64 text rows into the binary column in the background; the app serves both formats meanwhile
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyFormat() {
+        if (!migrateOnStartup) {
+            return;
+        }
+        long legacyRows = secretRepository.countByEncryptedValueIsNotNull();
+        if (legacyRows > 0) {
+            logger.info("Re-key: {} secrets still use the text ciphertext format, starting migration", legacyRows);
+            start(false);
+        }
+    }
+
+    public ReKeyProgress progress() {
+        ReKeyProgress progress = new ReKeyProgress();
+        progress.setState(state.get());
+        progress.setPhase(phase.get());
+        progress.setTotal(total.get());
+        progress.setProcessed(processed.get());
+        progress.setSkipped(skipped.get());
+        progress.setFailed(failed.get());
+        progress.setStartedAt(startedAt);
+        progress.setFinishedAt(finishedAt);
+        progress.setError(error);
+        return progress;
+    }
+
+    private void run(boolean rotateDataKeys) {
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "rekey-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            phase.set("REWRAP");
+            int rewrapped = keyManagementService.rewrapDataKeys();
+            logger.info("Re-key: re-wrapped {} data keys under the active master key", rewrapped);
+            if (rotateDataKeys) {
+                logger.info("Re-key: retired {} active data keys", keyManagementService.retireActiveDataKeys());
+            }
+
+            phase.set("SECRETS");
+            total.addAndGet(secretRepository.countNeedingReKey());
+            processAll(workers, secretRepository::findIdsNeedingReKey, this::reKeySecrets);
+
+            phase.set("HISTORY");
+            total.addAndGet(secretHistoryRepository.countNeedingReKey());
+            processAll(workers, secretHistoryRepository::findIdsNeedingReKey, this::reKeyHistory);
+
+            state.set("COMPLETED");
+            logger.info("Re-key completed: {} processed, {} skipped, {} failed", processed.get(), skipped.get(),
+                    failed.get());
+        } catch (Exception e) {
+            state.set("FAILED");
+            error = e.getMessage();
+            logger.error("Re-key failed", e);
+        } finally {
+            workers.shutdown();
+            finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+    }
+
+    private void processAll(ExecutorService workers, BiFunction<UUID, Pageable, List<UUID>> nextPage,
+            Consumer<List<UUID>> batchHandler) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(parallelism);
+        Pageable page = PageRequest.of(0, batchSize);
+        UUID afterId = MIN_ID;
+        while (true) {
+            List<UUID> ids = nextPage.apply(afterId, page);
+            if (ids.isEmpty()) {
+                break;
+            }
+            afterId = ids.get(ids.size() - 1);
+
+            inFlight.acquire();
+            workers.execute(() -> {
+                try {
+                    batchHandler.accept(ids);
+                } catch (Exception e) {
+                    failed.addAndGet(ids.size());
+                    logger.error("Re-key batch of {} rows failed: {}", ids.size(), e.getMessage());
+                } finally {
+                    inFlight.release();
+                }
+            });
+
+            // Throttle so live traffic keeps most of the pool and CPU
+            if (batchDelayMillis > 0) {
+                Thread.sleep(batchDelayMillis);
+            }
+        }
+        // Wait for the tail of this phase before starting the next one
+        inFlight.acquire(parallelism);
+        inFlight.release(parallelism);
+    }
+
+    private void reKeySecrets(List<UUID> ids) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Secret secret : secretRepository.findWithOwnerByIdIn(ids)) {
+                try {
+                    (reKeySecret(secret) ? processed : skipped).incrementAndGet();
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    logger.error("Re-key failed for secret {}: {}", secret.getId(), e.getMessage());
+                }
+            }
+        });
+    }
+
+    private boolean reKeySecret(Secret secret) throws Exception {
+        UUID activeKeyId = keyManagementService.activeKey(secret.getOwner()).id();
+        if (secret.getEncryptedValue() != null) {
+            // Text rows already under the active key only change format; no decrypt needed
+            byte[] converted = activeKeyId.equals(secret.getDataKeyId())
+                    ? encryptionService.toBinary(secret.getEncryptedValue())
+                    : encryptionService.encrypt(encryptionService.decrypt(secret.getEncryptedValue()),
+                            secret.getOwner());
+            return secretRepository.compareAndSetLegacyValue(secret.getId(), secret.getEncryptedValue(),
+                    converted, encryptionService.keyIdOf(converted)) == 1;
+        }
+
+        byte[] reEncrypted = encryptionService.encrypt(encryptionService.decrypt(secret.getEncryptedData()),
+                secret.getOwner());
+        return secretRepository.compareAndSetEncryptedData(secret.getId(), secret.getEncryptedData(),
+                reEncrypted, encryptionService.keyIdOf(reEncrypted)) == 1;
+    }
+
+    private void reKeyHistory(List<UUID> ids) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (SecretHistory history : secretHistoryRepository.findWithOwnerByIdIn(ids)) {
+                try {
+                    Map<String, Object> previousData = new HashMap<>(history.getPreviousData());
+                    String plainText;
+                    if (previousData.containsKey(SecretService.HISTORY_ENCRYPTED_VALUE)) {
+                        plainText = encryptionService.decrypt(
+                                (String) previousData.get(SecretService.HISTORY_ENCRYPTED_VALUE));
+                    } else if (previousData.containsKey(SecretService.HISTORY_PLAIN_VALUE)) {
+                        // Snapshots written before envelope encryption kept the previous value in plaintext
+                        plainText = (String) previousData.remove(SecretService.HISTORY_PLAIN_VALUE);
+                    } else {
+                        skipped.incrementAndGet();
+                        continue;
+                    }
+
+                    String reEncrypted = encryptionService.encryptToText(plainText, history.getSecret().getOwner());
+                    previousData.put(SecretService.HISTORY_ENCRYPTED_VALUE, reEncrypted);
+                    history.setPreviousData(previousData);
+                    history.setDataKeyId(encryptionService.keyIdOf(reEncrypted));
+                    processed.incrementAndGet();
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    logger.error("Re-key failed for history {}: {}", history.getId(), e.getMessage());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,150 @@
+package com.passkind.backend.service;
+
+import com.passkind.backend.entity.RefreshToken;
+import com.passkind.backend.entity.User;
+import com.passkind.backend.exception.UnauthorizedException;
+import com.passkind.backend.repository.RefreshTokenRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+// Long-lived opaque refresh tokens that buy new access tokens without a password check. Each refresh
+// exchanges the token for a successor in the same family; a token presented a second time means it leaked
+// (or the client raced itself), so the whole family is revoked and the user signs in again.
+// Tokens are stored as HMAC-SHA256 digests: a refresh costs one indexed lookup and an HMAC, not a BCrypt hash.
+@Service
+public class RefreshTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+    private static final int TOKEN_BYTES = 32;
+
+    public record Rotation(String username, String refreshToken) {
+    }
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final MeterRegistry meterRegistry;
+    private final SecretKeySpec hashKey;
+    private final Duration ttl;
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, MeterRegistry meterRegistry,
+            @Value("${app.refresh-token.secret:${jwt.secret}}") String secret,
+            @Value("${app.refresh-token.ttl-days:14}") long ttlDays) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.meterRegistry = meterRegistry;
+        this.hashKey = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.ttl = Duration.ofDays(ttlDays);
+    }
+
+    // Starts a new family, e.g. at login
+    @Transactional
+    public String issue(User user) {
+        return issue(user, UUID.randomUUID(), LocalDateTime.now());
+    }
+
+    // Not rolled back on rejection: a detected reuse must stay revoked
+    @Transactional(noRollbackFor = UnauthorizedException.class)
+    public Rotation rotate(String rawToken) {
+        RefreshToken token = find(rawToken);
+        LocalDateTime now = LocalDateTime.now();
+        if (token == null || token.getRevokedAt() != null) {
+            throw rejected("invalid", "Invalid refresh token");
+        }
+        if (token.getUsedAt() != null || refreshTokenRepository.markUsed(token.getId(), now) == 0) {
+            int revoked = refreshTokenRepository.revokeFamily(token.getFamilyId(), now);
+            logger.warn("Refresh token reuse for user {}: revoked {} tokens of family {}",
+                    token.getUser().getUsername(), revoked, token.getFamilyId());
+            throw rejected("reused", "Refresh token was already used; please sign in again");
+        }
+        if (token.getExpiresAt().isBefore(now)) {
+            throw rejected("expired", "Refresh token expired");
+        }
+        User user = token.getUser();
+        if (Boolean.TRUE.equals(user.getIsLocked())
+                && (user.getLockUntil() == null || user.getLockUntil().isAfter(now))) {
+            throw rejected("locked", "Account is locked. Please try again later.");
+        }
+        count("rotated");
+        return new Rotation(user.getUsername(), issue(user, token.getFamilyId(), now));
+    }
+
+    // Logout: ends the token's family. Unknown tokens are ignored.
+    @Transactional
+    public void revoke(String rawToken) {
+        RefreshToken token = find(rawToken);
+        if (token != null) {
+            refreshTokenRepository.revokeFamily(token.getFamilyId(), LocalDateTime.now());
+        }
+    }
+
+    // Signs the user out everywhere, e.g. after a password change
+    @Transactional
+    public void revokeAll(User user) {
+        refreshTokenRepository.revokeAllForUser(user.getId(), LocalDateTime.now());
+    }
+
+    @Scheduled(fixedDelayString = "${app.refresh-token.cleanup-interval-ms:3600000}")
+    @Transactional
+    public void deleteExpired() {
+        int deleted = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            logger.info("Deleted {} expired refresh tokens", deleted);
+        }
+    }
+
+    private String issue(User user, UUID familyId, LocalDateTime now) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        SECURE_RANDOM.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        RefreshToken token = new RefreshToken();
+        token.setUser(user);
+        token.setFamilyId(familyId);
+        token.setTokenHash(hash(rawToken));
+        token.setCreatedAt(now);
+        token.setExpiresAt(now.plus(ttl));
+        refreshTokenRepository.save(token);
+        return rawToken;
+    }
+
+    private RefreshToken find(String rawToken) {
+        if (rawToken == null || rawToken.isBlank()) {
+            return null;
+        }
+        return refreshTokenRepository.findByTokenHash(hash(rawToken.trim())).orElse(null);
+    }
+
+    private String hash(String rawToken) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(hashKey);
+            return HexFormat.of().formatHex(mac.doFinal(rawToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private UnauthorizedException rejected(String outcome, String message) {
+        count(outcome);
+        return new UnauthorizedException(message);
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("passkind.auth.refresh", "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,114 @@
+package com.passkind.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.passkind.backend.config.ReadWriteRoutingDataSource;
+import com.passkind.backend.repository.SecretShareRepository;
+import com.passkind.backend.repository.UserRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Resolves what a user may do with a secret (owner or share permission) in one query, cached per user id: a
+// username can be given up by a rename and registered again, and must not inherit the old account's entries.
+// A user's whole entry is dropped, on every node, whenever a share involving them changes. Lookups always read
+// the primary: a lagging replica could still show a revoked share (or a username's previous owner) and put it
+// back in the cache after the eviction.
+@Service
+public class SecretAclService {
+
+    public enum Access {
+        NONE, READ, WRITE, OWNER;
+
+        public boolean allows(Access required) {
+            return compareTo(required) >= 0;
+        }
+    }
+
+    private static final String TOPIC = "acl";
+    // Same as SecretShareRepository.findAccess
+    private static final String ACCESS_SQL = "SELECT CASE WHEN s.user_id = ? THEN 'OWNER' "
+            + "ELSE coalesce(sh.permission, 'NONE') END FROM secrets s "
+            + "LEFT JOIN secret_shares sh ON sh.secret_id = s.id AND sh.user_id = ? WHERE s.id = ?";
+    // Same as UserRepository.findIdByUsername
+    private static final String USER_ID_SQL = "SELECT id FROM users WHERE username = ?";
+
+    private final SecretShareRepository secretShareRepository;
+    private final UserRepository userRepository;
+    private final CacheInvalidationService cacheInvalidationService;
+    private final ReadWriteRoutingDataSource routingDataSource;
+    private final JdbcTemplate primaryJdbcTemplate;
+    private final Cache<UUID, Map<UUID, Access>> acl;
+
+    public SecretAclService(SecretShareRepository secretShareRepository, UserRepository userRepository,
+            CacheInvalidationService cacheInvalidationService, HikariDataSource primaryDataSource,
+            ReadWriteRoutingDataSource routingDataSource, MeterRegistry meterRegistry,
+            @Value("${app.acl.cache-size:10000}") long cacheSize,
+            @Value("${app.acl.cache-ttl-seconds:300}") long cacheTtlSeconds) {
+        this.secretShareRepository = secretShareRepository;
+        this.userRepository = userRepository;
+        this.cacheInvalidationService = cacheInvalidationService;
+        this.routingDataSource = routingDataSource;
+        this.primaryJdbcTemplate = new JdbcTemplate(primaryDataSource);
+        // The TTL is the fallback when a node misses an invalidation (channel down or disabled)
+        this.acl = Caffeine.newBuilder().maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds)).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, acl, "secretAcl");
+        cacheInvalidationService.subscribe(TOPIC, userId -> acl.invalidate(UUID.fromString(userId)),
+                acl::invalidateAll);
+    }
+
+    // Empty when the secret does not exist. The username is resolved to the account holding it now (one
+    // primary-key lookup per call); a username nobody holds has no access.
+    public Optional<Access> accessFor(UUID secretId, String username) {
+        Optional<UUID> userId = findUserId(username);
+        if (userId.isEmpty()) {
+            return Optional.of(Access.NONE);
+        }
+        Map<UUID, Access> entries = acl.get(userId.get(), key -> new ConcurrentHashMap<>());
+        Access cached = entries.get(secretId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<Access> access = findAccess(secretId, userId.get());
+        access.ifPresent(value -> entries.put(secretId, value));
+        return access;
+    }
+
+    // A read-only transaction is routed to a replica, so the lookups then take their own primary connection (from
+    // the primary pool, which the caller's replica connection does not hold). Otherwise the caller is on the primary.
+    private Optional<Access> findAccess(UUID secretId, UUID userId) {
+        if (readsReplica()) {
+            return primaryJdbcTemplate.query(ACCESS_SQL, (rs, row) -> Access.valueOf(rs.getString(1)), userId,
+                    userId, secretId).stream().findFirst();
+        }
+        return secretShareRepository.findAccess(secretId, userId).map(Access::valueOf);
+    }
+
+    private Optional<UUID> findUserId(String username) {
+        if (readsReplica()) {
+            return primaryJdbcTemplate.query(USER_ID_SQL, (rs, row) -> rs.getObject(1, UUID.class), username)
+                    .stream().findFirst();
+        }
+        return userRepository.findIdByUsername(username);
+    }
+
+    private boolean readsReplica() {
+        return routingDataSource.hasReplicas() && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    // Deferred to commit so a concurrent reader cannot re-cache the old permission from uncommitted state
+    public void invalidate(UUID userId) {
+        cacheInvalidationService.publish(TOPIC, userId.toString());
+    }
+}
@@ -2,39 +2,68 @@ package com.passkind.backend.service;
 
 import com.passkind.backend.entity.AuditLog;
 import com.passkind.backend.entity.Secret;
+import com.passkind.backend.entity.Tag;
 import com.passkind.backend.entity.User;
+import com.passkind.backend.exception.BadRequestException;
+import com.passkind.backend.exception.ForbiddenException;
+import com.passkind.backend.exception.PreconditionFailedException;
 import com.passkind.backend.exception.ResourceNotFoundException;
-import com.passkind.backend.exception.UnauthorizedException;
+import com.passkind.backend.metrics.ExportMetrics;
 import com.passkind.backend.repository.AuditLogRepository;
 import com.passkind.backend.repository.SecretRepository;
+import com.passkind.backend.repository.SecretShareRepository;
 import com.passkind.backend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class SecretService {
 
+    private static final Logger logger = LoggerFactory.getLogger(SecretService.class);
+
+    public static final String HISTORY_ENCRYPTED_VALUE = "encryptedSecretValue";
+    public static final String HISTORY_PLAIN_VALUE = "secretValue";
+    private static final java.util.Set<String> SHARE_PERMISSIONS = java.util.Set.of("READ", "WRITE");
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_BATCH_SIZE = 100;
+
     private final SecretRepository secretRepository;
     private final UserRepository userRepository;
     private final EncryptionService encryptionService;
     private final AuditLogRepository auditLogRepository;
     private final com.passkind.backend.repository.SecretHistoryRepository secretHistoryRepository;
     private final org.springframework.security.crypto.password.PasswordEncoder passwordEncoder;
+    private final ExportMetrics exportMetrics;
+    private final SecretShareRepository secretShareRepository;
+    private final SecretAclService secretAclService;
+    private final TagService tagService;
 
     public SecretService(SecretRepository secretRepository, UserRepository userRepository,
             EncryptionService encryptionService, AuditLogRepository auditLogRepository,
             com.passkind.backend.repository.SecretHistoryRepository secretHistoryRepository,
-            org.springframework.security.crypto.password.PasswordEncoder passwordEncoder) {
+            org.springframework.security.crypto.password.PasswordEncoder passwordEncoder,
+            ExportMetrics exportMetrics, SecretShareRepository secretShareRepository,
+            SecretAclService secretAclService, TagService tagService) {
         this.secretRepository = secretRepository;
         this.userRepository = userRepository;
         this.encryptionService = encryptionService;
         this.auditLogRepository = auditLogRepository;
         this.secretHistoryRepository = secretHistoryRepository;
         this.passwordEncoder = passwordEncoder;
+        this.exportMetrics = exportMetrics;
+        this.secretShareRepository = secretShareRepository;
+        this.secretAclService = secretAclService;
+        this.tagService = tagService;
     }
 
     @Transactional
@@ -47,32 +76,59 @@ public class SecretService {
 
         Secret secret = new Secret();
         secret.setName(name);
-        secret.setEncryptedValue(encryptionService.encrypt(value));
         secret.setOwner(user);
+        setEncryptedValue(secret, value);
         secret.setMetadata(metadata);
-        secret.setTags(tags);
+        secret.setTags(tagService.resolve(user, tags));
         secret.setEmail(email);
         secret.setUsername(usernameForSecret);
 
         Secret savedSecret = secretRepository.save(secret);
+        tagService.recordUsage(Set.of(), savedSecret.getTags());
 
         // Log history
-        logHistory(savedSecret, user, "CREATE", null);
+        logHistory(savedSecret, user, "CREATE", null, null, null);
 
         logAudit(username, "CREATE", "SECRET", String.valueOf(savedSecret.getId()), "Created secret: " + name);
 
         return savedSecret;
     }
 
+    // expectedVersion comes from If-Match. When it is older than the stored version the request is merged
+    // with what changed since (see rebase); null updates unconditionally.
     @Transactional
     public Secret updateSecret(java.util.UUID secretId, String name, String value, Map<String, Object> metadata,
-            List<String> tags, String email, String usernameForSecret) throws Exception {
+            List<String> tags, String email, String usernameForSecret, Long expectedVersion) throws Exception {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        Secret secret = secretRepository.findById(secretId)
-                .orElseThrow(() -> new ResourceNotFoundException("Secret not found with id: " + secretId));
-
-        if (!secret.getOwner().getUsername().equals(username)) {
-            throw new UnauthorizedException("You do not have permission to update this secret");
+        Secret secret = findAuthorized(secretId, username, SecretAclService.Access.WRITE,
+                "You do not have permission to update this secret");
+        User modifiedBy = secret.getOwner().getUsername().equals(username) ? secret.getOwner()
+                : userRepository.findByUsername(username)
+                        .orElseThrow(() -> new ResourceNotFoundException("User not found: " + username));
+
+        // Fields the request sets, keyed like the history snapshot. Empty name/value and null for the others
+        // leave the field as it is; metadata and tags are replaced even when empty.
+        Map<String, Object> changes = new java.util.HashMap<>();
+        if (name != null && !name.isEmpty()) {
+            changes.put("name", name);
+        }
+        if (value != null && !value.isEmpty()) {
+            changes.put(HISTORY_PLAIN_VALUE, value);
+        }
+        if (metadata != null) {
+            changes.put("metadata", metadata);
+        }
+        if (tags != null) {
+            changes.put("tags", tags);
+        }
+        if (email != null) {
+            changes.put("email", email);
+        }
+        if (usernameForSecret != null) {
+            changes.put("username", usernameForSecret);
+        }
+        if (expectedVersion != null && expectedVersion != secret.getVersion()) {
+            changes = rebase(secret, expectedVersion, changes);
         }
 
         // Capture previous state for history
@@ -81,113 +137,417 @@ public class SecretService {
         previousData.put("email", secret.getEmail());
         previousData.put("username", secret.getUsername());
 
-        // Decrypt the value before storing in history
-        try {
-            String decryptedValue = encryptionService.decrypt(secret.getEncryptedValue());
-            previousData.put("secretValue", decryptedValue);
-        } catch (Exception e) {
-            previousData.put("secretValue", "[Decryption failed]");
-        }
+        // History keeps the ciphertext; it is decrypted only when the history is read
+        previousData.put(HISTORY_ENCRYPTED_VALUE, secret.getEncryptedData() != null
+                ? encryptionService.toText(secret.getEncryptedData())
+                : secret.getEncryptedValue());
+        java.util.UUID previousKeyId = secret.getDataKeyId();
+        long previousVersion = secret.getVersion();
 
-        previousData.put("tags", secret.getTags());
+        previousData.put("tags", secret.getTagNames());
         previousData.put("metadata", secret.getMetadata());
 
-        if (name != null && !name.isEmpty()) {
-            secret.setName(name);
+        if (changes.containsKey("name")) {
+            secret.setName((String) changes.get("name"));
         }
-        if (value != null && !value.isEmpty()) {
-            secret.setEncryptedValue(encryptionService.encrypt(value));
+        if (changes.containsKey(HISTORY_PLAIN_VALUE)) {
+            setEncryptedValue(secret, (String) changes.get(HISTORY_PLAIN_VALUE));
         }
-        // Always update metadata when provided (even if empty map)
-        secret.setMetadata(metadata != null ? metadata : secret.getMetadata());
-        // Always update tags when provided (even if empty list)
-        secret.setTags(tags != null ? tags : secret.getTags());
-        if (email != null) {
-            secret.setEmail(email);
+        if (changes.containsKey("metadata")) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> newMetadata = (Map<String, Object>) changes.get("metadata");
+            secret.setMetadata(newMetadata);
         }
-        if (usernameForSecret != null) {
-            secret.setUsername(usernameForSecret);
+        // Changed in place so only the differing links are written; tags always come from the owner's
+        // catalog, whoever edits.
+        if (changes.containsKey("tags")) {
+            @SuppressWarnings("unchecked")
+            List<String> newTags = (List<String>) changes.get("tags");
+            Set<Tag> before = new LinkedHashSet<>(secret.getTags());
+            Set<Tag> after = tagService.resolve(secret.getOwner(), newTags);
+            secret.getTags().retainAll(after);
+            secret.getTags().addAll(after);
+            tagService.recordUsage(before, after);
+        }
+        if (changes.containsKey("email")) {
+            secret.setEmail((String) changes.get("email"));
+        }
+        if (changes.containsKey("username")) {
+            secret.setUsername((String) changes.get("username"));
         }
 
         Secret updatedSecret = secretRepository.save(secret);
 
-        logHistory(updatedSecret, secret.getOwner(), "UPDATE", previousData);
+        logHistory(updatedSecret, modifiedBy, "UPDATE", previousData, previousKeyId, previousVersion);
         logAudit(username, "UPDATE", "SECRET", String.valueOf(updatedSecret.getId()), "Updated secret: " + name);
 
         return updatedSecret;
     }
 
+    // Three-way merge of changes made against an older version, using that version's history snapshot as the
+    // common base. Per field: left as it was at that version, the current value stays; changed only by the
+    // request, it is applied; changed on both sides to different values, the update is refused.
+    private Map<String, Object> rebase(Secret secret, long baseVersion, Map<String, Object> changes)
+            throws Exception {
+        Map<String, Object> base = baseVersion > secret.getVersion() ? null
+                : secretHistoryRepository.findFirstBySecretAndSecretVersion(secret, baseVersion)
+                        .map(this::readablePreviousData).orElse(null);
+        if (base == null) {
+            throw new PreconditionFailedException("Version " + baseVersion + " of this secret is not available; "
+                    + "current version is " + secret.getVersion());
+        }
+
+        Map<String, Object> merged = new java.util.HashMap<>();
+        List<String> conflicts = new java.util.ArrayList<>();
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            String field = change.getKey();
+            Object baseValue = comparable(field, base.get(field));
+            Object requested = comparable(field, change.getValue());
+            if (java.util.Objects.equals(requested, baseValue)) {
+                continue;
+            }
+            Object current = comparable(field, currentValue(secret, field));
+            if (java.util.Objects.equals(current, baseValue) || java.util.Objects.equals(current, requested)) {
+                merged.put(field, change.getValue());
+            } else {
+                conflicts.add(HISTORY_PLAIN_VALUE.equals(field) ? "value" : field);
+            }
+        }
+        if (!conflicts.isEmpty()) {
+            java.util.Collections.sort(conflicts);
+            throw new PreconditionFailedException("Secret changed since version " + baseVersion
+                    + "; conflicting fields: " + String.join(", ", conflicts));
+        }
+        return merged;
+    }
+
+    private Object currentValue(Secret secret, String field) throws Exception {
+        return switch (field) {
+            case "name" -> secret.getName();
+            case "email" -> secret.getEmail();
+            case "username" -> secret.getUsername();
+            case "tags" -> secret.getTagNames();
+            case "metadata" -> secret.getMetadata();
+            case HISTORY_PLAIN_VALUE -> decryptValue(secret);
+            default -> throw new IllegalArgumentException("Unknown field: " + field);
+        };
+    }
+
+    // Snapshot, request and entity values in one shape: tags as a normalized set, absent metadata as empty,
+    // null strings as empty
+    @SuppressWarnings("unchecked")
+    private static Object comparable(String field, Object value) {
+        if ("tags".equals(field)) {
+            return new java.util.TreeSet<>(TagService.normalize((java.util.Collection<String>) value));
+        }
+        if ("metadata".equals(field)) {
+            return value == null ? Map.of() : value;
+        }
+        return value == null ? "" : value;
+    }
+
+    @Transactional(readOnly = true)
     public List<Secret> getMySecrets() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        return getSecretsOwnedBy(SecurityContextHolder.getContext().getAuthentication().getName());
+    }
+
+    // For work off the request thread (export jobs), where there is no security context
+    @Transactional(readOnly = true)
+    public List<Secret> getSecretsOwnedBy(String username) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found: " + username));
         return secretRepository.findByOwner(user);
     }
 
-    public String getDecryptedValue(java.util.UUID secretId) throws Exception {
+    // Optionally only secrets carrying all of the given tags
+    @Transactional(readOnly = true)
+    public List<com.passkind.backend.dto.SecretSummaryResponse> getMySecretSummaries(List<String> tags) {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        Secret secret = secretRepository.findById(secretId)
-                .orElseThrow(() -> new ResourceNotFoundException("Secret not found with id: " + secretId));
 
-        if (!secret.getOwner().getUsername().equals(username)) {
-            throw new UnauthorizedException("You do not have permission to access this secret");
+        List<Long> tagIds = tagService.findMyTagIds(tags);
+        if (tagIds == null) {
+            return new java.util.ArrayList<>();
+        }
+        List<SecretRepository.SecretSummaryView> views = tagIds.isEmpty()
+                ? secretRepository.findSummariesByOwnerUsername(username)
+                : secretRepository.findSummariesByOwnerUsernameAndTagIds(username, tagIds, tagIds.size());
+
+        Map<java.util.UUID, com.passkind.backend.dto.SecretSummaryResponse> summaries = new java.util.LinkedHashMap<>();
+        for (SecretRepository.SecretSummaryView view : views) {
+            com.passkind.backend.dto.SecretSummaryResponse summary = new com.passkind.backend.dto.SecretSummaryResponse();
+            summary.setId(view.getId());
+            summary.setName(view.getName());
+            summary.setUsername(view.getUsername());
+            summary.setEmail(view.getEmail());
+            summary.setCreatedAt(view.getCreatedAt());
+            summary.setUpdatedAt(view.getUpdatedAt());
+            summaries.put(view.getId(), summary);
+        }
+
+        // Tags come from a second flat query instead of one lazy collection load per secret
+        List<SecretRepository.SecretTagView> tagRows;
+        if (tagIds.isEmpty()) {
+            tagRows = secretRepository.findTagsByOwnerUsername(username);
+        } else {
+            tagRows = summaries.isEmpty() ? List.of() : secretRepository.findTagsBySecretIdIn(summaries.keySet());
         }
+        for (SecretRepository.SecretTagView tag : tagRows) {
+            com.passkind.backend.dto.SecretSummaryResponse summary = summaries.get(tag.getSecretId());
+            if (summary != null) {
+                summary.getTags().add(tag.getTag());
+            }
+        }
+
+        return new java.util.ArrayList<>(summaries.values());
+    }
+
+    @Transactional(readOnly = true)
+    public String getDecryptedValue(java.util.UUID secretId) throws Exception {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        Secret secret = findAuthorized(secretId, username, SecretAclService.Access.READ,
+                "You do not have permission to access this secret");
 
         // logAudit(username, "READ", "SECRET", String.valueOf(secretId), "Accessed
         // secret value");
-        return encryptionService.decrypt(secret.getEncryptedValue());
+        return decryptValue(secret);
     }
 
-    public Secret getSecret(java.util.UUID secretId) {
+    // The caller's secrets among `ids`, in request order. Unknown ids and other users' secrets are simply
+    // left out, as are duplicates.
+    @Transactional(readOnly = true)
+    public List<Secret> getMySecrets(List<java.util.UUID> ids) {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        Secret secret = secretRepository.findById(secretId)
-                .orElseThrow(() -> new ResourceNotFoundException("Secret not found with id: " + secretId));
+        Set<java.util.UUID> wanted = batchIds(ids);
+        if (wanted.isEmpty()) {
+            return new java.util.ArrayList<>();
+        }
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found: " + username));
 
-        if (!secret.getOwner().getUsername().equals(username)) {
-            throw new UnauthorizedException("You do not have permission to access this secret");
+        Map<java.util.UUID, Secret> byId = new java.util.HashMap<>();
+        for (Secret secret : secretRepository.findByIdInAndOwner(wanted, user)) {
+            byId.put(secret.getId(), secret);
+        }
+        List<Secret> secrets = new java.util.ArrayList<>(byId.size());
+        for (java.util.UUID id : wanted) {
+            Secret secret = byId.get(id);
+            if (secret != null) {
+                secrets.add(secret);
+            }
         }
-        return secret;
+        return secrets;
+    }
+
+    // Decrypted values of the caller's secrets among `ids`, keyed by id in request order. Binary rows are
+    // decrypted together; rows still in the Base64 text format go one by one.
+    @Transactional(readOnly = true)
+    public Map<java.util.UUID, String> getDecryptedValues(List<java.util.UUID> ids) throws Exception {
+        return decryptValues(getMySecrets(ids));
+    }
+
+    // Same, for secrets already loaded through an owner-scoped query
+    public Map<java.util.UUID, String> decryptValues(List<Secret> secrets) throws Exception {
+        List<byte[]> batch = new java.util.ArrayList<>(secrets.size());
+        for (Secret secret : secrets) {
+            if (secret.getEncryptedData() != null) {
+                batch.add(secret.getEncryptedData());
+            }
+        }
+        java.util.Iterator<String> decrypted = encryptionService.decryptAll(batch).iterator();
+
+        Map<java.util.UUID, String> values = new java.util.LinkedHashMap<>();
+        for (Secret secret : secrets) {
+            values.put(secret.getId(), secret.getEncryptedData() != null ? decrypted.next()
+                    : encryptionService.decrypt(secret.getEncryptedValue()));
+        }
+        return values;
+    }
+
+    // For secrets already loaded through an owner-scoped query (e.g. getMySecrets), skipping the per-row lookup
+    public String decryptValue(Secret secret) throws Exception {
+        // Rows not yet migrated to the binary column still hold Base64 text
+        if (secret.getEncryptedData() != null) {
+            return encryptionService.decrypt(secret.getEncryptedData());
+        }
+        return encryptionService.decrypt(secret.getEncryptedValue());
+    }
+
+    @Transactional(readOnly = true)
+    public Secret getSecret(java.util.UUID secretId) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        return findAuthorized(secretId, username, SecretAclService.Access.READ,
+                "You do not have permission to access this secret");
     }
 
     @Transactional
     public void deleteSecret(java.util.UUID secretId) {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        Secret secret = secretRepository.findById(secretId)
-                .orElseThrow(() -> new ResourceNotFoundException("Secret not found with id: " + secretId));
-
-        if (!secret.getOwner().getUsername().equals(username)) {
-            throw new UnauthorizedException("You do not have permission to delete this secret");
-        }
+        Secret secret = findAuthorized(secretId, username, SecretAclService.Access.OWNER,
+                "You do not have permission to delete this secret");
 
-        // Delete history first to avoid foreign key constraint violation
+        // Delete history and shares first to avoid foreign key constraint violation
         List<com.passkind.backend.entity.SecretHistory> history = secretHistoryRepository
                 .findBySecretOrderByModifiedAtDesc(secret);
         secretHistoryRepository.deleteAll(history);
+        for (com.passkind.backend.entity.SecretShare share : secretShareRepository.findWithUserBySecret(secret)) {
+            secretAclService.invalidate(share.getSharedWith().getId());
+            secretShareRepository.delete(share);
+        }
+        secretAclService.invalidate(secret.getOwner().getId());
+        tagService.recordUsage(new LinkedHashSet<>(secret.getTags()), Set.of());
 
         secretRepository.delete(secret);
         logAudit(username, "DELETE", "SECRET", String.valueOf(secretId), "Deleted secret: " + secret.getName());
     }
 
+    // Creates the share, or changes the permission of an existing one
     @Transactional
     public void shareSecret(java.util.UUID secretId, String targetUsername, String permission) {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        Secret secret = secretRepository.findById(secretId)
-                .orElseThrow(() -> new ResourceNotFoundException("Secret not found with id: " + secretId));
+        Secret secret = findAuthorized(secretId, username, SecretAclService.Access.OWNER,
+                "Only owner can share secret");
 
-        if (!secret.getOwner().getUsername().equals(username)) {
-            throw new UnauthorizedException("Only owner can share secret");
+        if (!SHARE_PERMISSIONS.contains(permission)) {
+            throw new BadRequestException("Permission must be one of " + SHARE_PERMISSIONS);
+        }
+        if (username.equals(targetUsername)) {
+            throw new BadRequestException("Cannot share a secret with yourself");
         }
 
         User targetUser = userRepository.findByUsername(targetUsername)
                 .orElseThrow(() -> new ResourceNotFoundException("Target user not found: " + targetUsername));
 
-        com.passkind.backend.entity.SecretShare share = new com.passkind.backend.entity.SecretShare();
+        com.passkind.backend.entity.SecretShare share = secretShareRepository
+                .findBySecretAndSharedWith(secret, targetUser)
+                .orElseGet(com.passkind.backend.entity.SecretShare::new);
         share.setSecret(secret);
         share.setSharedWith(targetUser);
         share.setPermission(permission);
+        secretShareRepository.save(share);
+        secretAclService.invalidate(targetUser.getId());
 
-        // Save share logic would go here (need repository)
-        logAudit(username, "SHARE", "SECRET", String.valueOf(secretId), "Shared with " + targetUsername);
+        logAudit(username, "SHARE", "SECRET", String.valueOf(secretId),
+                "Shared with " + targetUsername + " (" + permission + ")");
+    }
+
+    @Transactional
+    public void unshareSecret(java.util.UUID secretId, String targetUsername) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        Secret secret = findAuthorized(secretId, username, SecretAclService.Access.OWNER,
+                "Only owner can unshare secret");
+
+        User targetUser = userRepository.findByUsername(targetUsername)
+                .orElseThrow(() -> new ResourceNotFoundException("Target user not found: " + targetUsername));
+        com.passkind.backend.entity.SecretShare share = secretShareRepository
+                .findBySecretAndSharedWith(secret, targetUser)
+                .orElseThrow(() -> new ResourceNotFoundException("Secret is not shared with " + targetUsername));
+
+        secretShareRepository.delete(share);
+        secretAclService.invalidate(targetUser.getId());
+        logAudit(username, "UNSHARE", "SECRET", String.valueOf(secretId), "Unshared with " + targetUsername);
+    }
+
+    @Transactional(readOnly = true)
+    public List<com.passkind.backend.dto.SecretShareResponse> getShares(java.util.UUID secretId) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        Secret secret = findAuthorized(secretId, username, SecretAclService.Access.OWNER,
+                "Only owner can view shares");
+
+        List<com.passkind.backend.dto.SecretShareResponse> shares = new java.util.ArrayList<>();
+        for (com.passkind.backend.entity.SecretShare share : secretShareRepository.findWithUserBySecret(secret)) {
+            com.passkind.backend.dto.SecretShareResponse response = new com.passkind.backend.dto.SecretShareResponse();
+            response.setUsername(share.getSharedWith().getUsername());
+            response.setPermission(share.getPermission());
+            shares.add(response);
+        }
+        return shares;
+    }
+
+    // Owned plus shared-with-me secrets, newest first, optionally narrowed by metadata conditions (see
+    // MetadataFilter). One query per page, plus one for the page's tags.
+    @Transactional(readOnly = true)
+    public com.passkind.backend.dto.SecretPageResponse getAccessibleSecrets(String cursor, Integer limit,
+            List<String> metadataConditions) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        // First page starts after a sentinel greater than any real (updatedAt, id)
+        LocalDateTime beforeUpdatedAt = LocalDateTime.of(9999, 12, 31, 0, 0);
+        java.util.UUID beforeId = new java.util.UUID(-1L, -1L);
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                String[] parts = new String(java.util.Base64.getUrlDecoder().decode(cursor),
+                        java.nio.charset.StandardCharsets.UTF_8).split("\\|");
+                beforeUpdatedAt = LocalDateTime.parse(parts[0]);
+                beforeId = java.util.UUID.fromString(parts[1]);
+            } catch (RuntimeException e) {
+                throw new BadRequestException("Invalid cursor");
+            }
+        }
+
+        // One extra row tells whether another page exists without a count query
+        MetadataFilter metadataFilter = MetadataFilter.parse(metadataConditions);
+        List<SecretRepository.AccessibleSecretView> rows = metadataFilter.isEmpty()
+                ? secretRepository.findAccessibleBefore(username, beforeUpdatedAt, beforeId,
+                        org.springframework.data.domain.PageRequest.of(0, pageSize + 1))
+                : secretRepository.findAccessibleByMetadataBefore(username, beforeUpdatedAt, beforeId,
+                        metadataFilter.containsJson(), metadataFilter.keysJson(), metadataFilter.prefixesJson(),
+                        pageSize + 1);
+
+        com.passkind.backend.dto.SecretPageResponse page = new com.passkind.backend.dto.SecretPageResponse();
+        Map<java.util.UUID, com.passkind.backend.dto.AccessibleSecretResponse> byId = new java.util.HashMap<>();
+        for (SecretRepository.AccessibleSecretView view : rows.subList(0, Math.min(pageSize, rows.size()))) {
+            com.passkind.backend.dto.AccessibleSecretResponse item = new com.passkind.backend.dto.AccessibleSecretResponse();
+            item.setId(view.getId());
+            item.setName(view.getName());
+            item.setUsername(view.getUsername());
+            item.setEmail(view.getEmail());
+            item.setOwner(view.getOwner());
+            item.setPermission(view.getPermission());
+            item.setCreatedAt(view.getCreatedAt());
+            item.setUpdatedAt(view.getUpdatedAt());
+            page.getItems().add(item);
+            byId.put(view.getId(), item);
+        }
+        if (!byId.isEmpty()) {
+            for (SecretRepository.SecretTagView tag : secretRepository.findTagsBySecretIdIn(byId.keySet())) {
+                byId.get(tag.getSecretId()).getTags().add(tag.getTag());
+            }
+        }
+        if (rows.size() > pageSize) {
+            SecretRepository.AccessibleSecretView last = rows.get(pageSize - 1);
+            page.setNextCursor(java.util.Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (last.getUpdatedAt() + "|" + last.getId()).getBytes(java.nio.charset.StandardCharsets.UTF_8)));
+        }
+        return page;
+    }
+
+    private static Set<java.util.UUID> batchIds(List<java.util.UUID> ids) {
+        Set<java.util.UUID> unique = new LinkedHashSet<>();
+        if (ids == null) {
+            return unique;
+        }
+        for (java.util.UUID id : ids) {
+            if (id != null) {
+                unique.add(id);
+            }
+        }
+        if (unique.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException("At most " + MAX_BATCH_SIZE + " ids per request");
+        }
+        return unique;
+    }
+
+    // Single cached ACL lookup instead of loading the secret and comparing owners; missing secrets are 404
+    private Secret findAuthorized(java.util.UUID secretId, String username, SecretAclService.Access required,
+            String deniedMessage) {
+        SecretAclService.Access access = secretAclService.accessFor(secretId, username)
+                .orElseThrow(() -> new ResourceNotFoundException("Secret not found with id: " + secretId));
+        if (!access.allows(required)) {
+            throw new ForbiddenException(deniedMessage);
+        }
+        return secretRepository.findWithTagsAndOwnerById(secretId)
+                .orElseThrow(() -> new ResourceNotFoundException("Secret not found with id: " + secretId));
     }
 
     private void logAudit(String username, String action, String resourceType, String resourceId, String details) {
@@ -200,38 +560,85 @@ public class SecretService {
         auditLogRepository.save(log);
     }
 
-    private void logHistory(Secret secret, User modifiedBy, String changeType, Map<String, Object> previousData) {
+    private void logHistory(Secret secret, User modifiedBy, String changeType, Map<String, Object> previousData,
+            java.util.UUID dataKeyId, Long secretVersion) {
         com.passkind.backend.entity.SecretHistory history = new com.passkind.backend.entity.SecretHistory();
         history.setSecret(secret);
         history.setModifiedBy(modifiedBy);
         history.setChangeType(changeType);
         history.setPreviousData(previousData);
+        history.setDataKeyId(dataKeyId);
+        history.setSecretVersion(secretVersion);
         secretHistoryRepository.save(history);
     }
 
-    public List<com.passkind.backend.entity.SecretHistory> getSecretHistory(java.util.UUID secretId) {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        Secret secret = secretRepository.findById(secretId)
-                .orElseThrow(() -> new ResourceNotFoundException("Secret not found with id: " + secretId));
+    private void setEncryptedValue(Secret secret, String value) throws Exception {
+        byte[] encryptedData = encryptionService.encrypt(value, secret.getOwner());
+        secret.setEncryptedData(encryptedData);
+        secret.setEncryptedValue(null);
+        secret.setDataKeyId(encryptionService.keyIdOf(encryptedData));
+    }
 
-        if (!secret.getOwner().getUsername().equals(username)) {
-            throw new UnauthorizedException("You do not have permission to view history for this secret");
+    // Snapshot as shown to clients: the stored ciphertext is swapped for the decrypted "secretValue"
+    public Map<String, Object> readablePreviousData(com.passkind.backend.entity.SecretHistory history) {
+        Map<String, Object> previousData = history.getPreviousData();
+        if (previousData == null || !previousData.containsKey(HISTORY_ENCRYPTED_VALUE)) {
+            return previousData;
+        }
+        Map<String, Object> readable = new java.util.HashMap<>(previousData);
+        Object encryptedValue = readable.remove(HISTORY_ENCRYPTED_VALUE);
+        try {
+            readable.put(HISTORY_PLAIN_VALUE, encryptionService.decrypt((String) encryptedValue));
+        } catch (Exception e) {
+            readable.put(HISTORY_PLAIN_VALUE, "[Decryption failed]");
         }
+        return readable;
+    }
+
+    @Transactional(readOnly = true)
+    public List<com.passkind.backend.entity.SecretHistory> getSecretHistory(java.util.UUID secretId) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        Secret secret = findAuthorized(secretId, username, SecretAclService.Access.READ,
+                "You do not have permission to view history for this secret");
 
         return secretHistoryRepository.findBySecretOrderByModifiedAtDesc(secret);
     }
 
+    // Not read-only: it writes the EXPORT audit row, which a read-only (replica) transaction rejects
+    @Transactional
     public byte[] exportSecretsAsExcel(String rawPassword) throws Exception {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        verifyExportPassword(username, rawPassword);
+
+        io.micrometer.core.instrument.Timer.Sample exportSample = exportMetrics.start();
+        java.io.ByteArrayOutputStream finalBos = new java.io.ByteArrayOutputStream();
+        int exportedSecrets = writeSecretsAsExcel(username, rawPassword, finalBos, count -> {
+        }, () -> {
+        });
+        byte[] exported = finalBos.toByteArray();
+        exportMetrics.record("excel", exportSample, exportedSecrets, exported.length);
+        return exported;
+    }
+
+    @Transactional(readOnly = true)
+    public User verifyExportPassword(String username, String rawPassword) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found: " + username));
-
-        // Verify password
         if (!passwordEncoder.matches(rawPassword, user.getPassword())) {
-            throw new IllegalArgumentException("Invalid password");
+            throw new BadRequestException("Invalid password");
         }
+        return user;
+    }
 
+    // Writes the password-protected workbook to out; also used by export jobs, off the request thread. total
+    // receives the number of secrets, advance is called per row. Returns the number of secrets written.
+    @Transactional
+    public int writeSecretsAsExcel(String username, String rawPassword, java.io.OutputStream out,
+            java.util.function.IntConsumer total, Runnable advance) throws Exception {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found: " + username));
         List<Secret> secrets = secretRepository.findByOwner(user);
+        total.accept(secrets.size());
 
         // Create workbook
         org.apache.poi.xssf.usermodel.XSSFWorkbook workbook = new org.apache.poi.xssf.usermodel.XSSFWorkbook();
@@ -263,17 +670,18 @@ public class SecretService {
 
             // Decrypt password
             try {
-                String decryptedValue = encryptionService.decrypt(secret.getEncryptedValue());
+                String decryptedValue = decryptValue(secret);
                 row.createCell(3).setCellValue(decryptedValue);
             } catch (Exception e) {
                 row.createCell(3).setCellValue("[Decryption failed]");
                 // Log error but continue export
-                System.err.println("Failed to decrypt secret " + secret.getId() + ": " + e.getMessage());
+                logger.error("Failed to decrypt secret {}: {}", secret.getId(), e.getMessage());
             }
 
-            row.createCell(4).setCellValue(secret.getTags() != null ? String.join(", ", secret.getTags()) : "");
+            row.createCell(4).setCellValue(String.join(", ", secret.getTagNames()));
             row.createCell(5).setCellValue(secret.getCreatedAt().toString());
             row.createCell(6).setCellValue(secret.getUpdatedAt().toString());
+            advance.run();
         }
 
         // Auto-size columns
@@ -304,11 +712,9 @@ public class SecretService {
                 opc.save(os);
             }
 
-            // Write the encrypted file system to the final output stream
-            java.io.ByteArrayOutputStream finalBos = new java.io.ByteArrayOutputStream();
-            fs.writeFilesystem(finalBos);
+            fs.writeFilesystem(out);
             logAudit(username, "EXPORT", "SECRETS", "ALL", "Exported secrets as Excel");
-            return finalBos.toByteArray();
+            return secrets.size();
         }
     }
 }
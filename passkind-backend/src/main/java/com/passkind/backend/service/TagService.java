@@ -0,0 +1,135 @@
+package com.passkind.backend.service;
+
+import com.passkind.backend.dto.TagCountResponse;
+import com.passkind.backend.entity.Tag;
+import com.passkind.backend.entity.User;
+import com.passkind.backend.exception.BadRequestException;
+import com.passkind.backend.repository.TagRepository;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+@Service
+public class TagService {
+
+    private static final int MAX_TAG_LENGTH = 255;
+
+    private final TagRepository tagRepository;
+
+    public TagService(TagRepository tagRepository) {
+        this.tagRepository = tagRepository;
+    }
+
+    // The owner's catalog entries for these names, creating missing ones. Names are trimmed; blanks and
+    // duplicates are dropped.
+    @Transactional
+    public Set<Tag> resolve(User owner, Collection<String> names) {
+        Set<String> wanted = normalize(names);
+        if (wanted.isEmpty()) {
+            return new LinkedHashSet<>();
+        }
+        List<Tag> tags = tagRepository.findByOwnerAndNameIn(owner, wanted);
+        if (tags.size() < wanted.size()) {
+            for (Tag tag : tags) {
+                wanted.remove(tag.getName());
+            }
+            for (String name : wanted) {
+                tagRepository.insertIfAbsent(owner.getId(), name);
+            }
+            tags = tagRepository.findByOwnerAndNameIn(owner, normalize(names));
+        }
+        return new LinkedHashSet<>(tags);
+    }
+
+    // Keeps usage counts in step with a secret's tag set changing from before to after
+    @Transactional
+    public void recordUsage(Set<Tag> before, Set<Tag> after) {
+        List<Long> removed = new ArrayList<>();
+        for (Tag tag : before) {
+            if (!after.contains(tag)) {
+                removed.add(tag.getId());
+            }
+        }
+        List<Long> added = new ArrayList<>();
+        for (Tag tag : after) {
+            if (!before.contains(tag)) {
+                added.add(tag.getId());
+            }
+        }
+        if (!removed.isEmpty()) {
+            tagRepository.adjustUsage(removed, -1);
+        }
+        if (!added.isEmpty()) {
+            tagRepository.adjustUsage(added, 1);
+        }
+    }
+
+    // Catalog ids for the caller's tags, or null when any name is unknown (nothing can match all of them).
+    // Empty when no usable name was given.
+    @Transactional(readOnly = true)
+    public List<Long> findMyTagIds(Collection<String> names) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        Set<String> wanted = normalize(names);
+        if (wanted.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> ids = tagRepository.findIdsByOwnerUsernameAndNameIn(username, wanted);
+        return ids.size() == wanted.size() ? ids : null;
+    }
+
+    // Straight from the maintained counts; no secret rows are read
+    @Transactional(readOnly = true)
+    public List<TagCountResponse> getMyTags() {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        return toResponses(tagRepository.findCatalogByOwnerUsername(username));
+    }
+
+    // Other tags on the secrets that carry all selected tags, with how many of those secrets have each.
+    // Without a selection this is the catalog itself.
+    @Transactional(readOnly = true)
+    public List<TagCountResponse> getMyFacets(List<String> selected) {
+        List<Long> tagIds = findMyTagIds(selected);
+        if (tagIds == null) {
+            return new ArrayList<>();
+        }
+        if (tagIds.isEmpty()) {
+            return getMyTags();
+        }
+        return toResponses(tagRepository.findFacets(tagIds, tagIds.size()));
+    }
+
+    private static List<TagCountResponse> toResponses(List<TagRepository.TagCountView> views) {
+        List<TagCountResponse> responses = new ArrayList<>(views.size());
+        for (TagRepository.TagCountView view : views) {
+            TagCountResponse response = new TagCountResponse();
+            response.setName(view.getName());
+            response.setCount(view.getCount());
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    static Set<String> normalize(Collection<String> names) {
+        Set<String> normalized = new LinkedHashSet<>();
+        if (names == null) {
+            return normalized;
+        }
+        for (String name : names) {
+            if (name == null || name.isBlank()) {
+                continue;
+            }
+            String trimmed = name.trim();
+            if (trimmed.length() > MAX_TAG_LENGTH) {
+                throw new BadRequestException("Tags must be at most " + MAX_TAG_LENGTH + " characters");
+            }
+            normalized.add(trimmed);
+        }
+        return normalized;
+    }
+}
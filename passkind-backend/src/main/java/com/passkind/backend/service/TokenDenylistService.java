@@ -0,0 +1,285 @@
+package com.passkind.backend.service;
+
+import com.passkind.backend.security.JwtTokenProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Revoked access tokens, checked on every authenticated request. Two kinds of entry: "jti:<id>" revokes one
+// token, "sub:<username>" revokes every token of that subject issued before a cutoff (password change).
+// Entries are kept in revoked_tokens until the tokens they cover would have expired anyway.
+//
+// In memory, an exact map answers the question and Bloom filters in front of it keep the common case (nothing
+// revoked) to a few lock-free array reads. Each filter covers entries expiring within one time slot; once the
+// slot has passed, that filter is simply dropped, so the filters shed expired entries without a full rebuild.
+@Service
+public class TokenDenylistService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenDenylistService.class);
+    private static final String TOPIC = "token-denylist";
+    private static final String JTI_PREFIX = "jti:";
+    private static final String SUBJECT_PREFIX = "sub:";
+    // revoked_before of a jti entry: the whole token, whenever it was issued
+    private static final long WHOLE_TOKEN = Long.MAX_VALUE;
+
+    private record Entry(long revokedBefore, long expiresAt) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CacheInvalidationService cacheInvalidationService;
+    private final long tokenLifetimeSeconds;
+    private final long slotSeconds;
+    private final int bitsPerFilter;
+    private final int hashCount;
+    private final Counter revokedRequests;
+    private final Counter falsePositives;
+
+    private volatile Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Copy-on-write: probes read the current array without locking; additions are rare and synchronized
+    private volatile SlotFilter[] filters = new SlotFilter[0];
+
+    public TokenDenylistService(JdbcTemplate jdbcTemplate, CacheInvalidationService cacheInvalidationService,
+            JwtTokenProvider tokenProvider, MeterRegistry meterRegistry,
+            @Value("${app.token-denylist.slot-minutes:15}") long slotMinutes,
+            @Value("${app.token-denylist.expected-per-slot:10000}") int expectedPerSlot,
+            @Value("${app.token-denylist.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cacheInvalidationService = cacheInvalidationService;
+        this.tokenLifetimeSeconds = tokenProvider.getExpirationMs() / 1000;
+        this.slotSeconds = Math.max(60, slotMinutes * 60);
+        // Standard sizing: m = -n ln(p) / ln(2)^2 bits, k = m/n ln(2) hashes
+        long bits = (long) Math.ceil(-expectedPerSlot * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitsPerFilter = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, bits));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitsPerFilter / expectedPerSlot * Math.log(2)));
+        this.revokedRequests = Counter.builder("passkind.jwt.denylist").tag("result", "revoked")
+                .description("Revocation filter hits, revoked or false positives").register(meterRegistry);
+        this.falsePositives = Counter.builder("passkind.jwt.denylist").tag("result", "false_positive")
+                .description("Revocation filter hits, revoked or false positives").register(meterRegistry);
+        Gauge.builder("passkind.jwt.denylist.entries", this, service -> service.entries.size())
+                .description("Revocation entries held in memory").register(meterRegistry);
+
+        cacheInvalidationService.subscribe(TOPIC, this::load, this::reload);
+    }
+
+    // Not in the constructor: the context must also start without a database (AppCDS training run)
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        reload();
+    }
+
+    // One token, e.g. on logout
+    public void revokeToken(String jti, Date expiration) {
+        if (jti == null || expiration == null) {
+            return;
+        }
+        store(JTI_PREFIX + jti, null, expiration.getTime() / 1000);
+    }
+
+    // Every token of the subject issued before now, e.g. after a password or username change. Tokens issued
+    // later in the same second (such as the one handed out with the change) stay valid.
+    public void revokeIssuedBefore(String username) {
+        long now = System.currentTimeMillis() / 1000;
+        store(SUBJECT_PREFIX + username, now, now + tokenLifetimeSeconds);
+    }
+
+    public boolean isRevoked(String jti, String subject, Date issuedAt) {
+        SlotFilter[] current = filters;
+        if (current.length == 0) {
+            return false;
+        }
+        String jtiKey = jti != null ? JTI_PREFIX + jti : null;
+        String subjectKey = subject != null ? SUBJECT_PREFIX + subject : null;
+        if (!mightContain(current, jtiKey) && !mightContain(current, subjectKey)) {
+            return false;
+        }
+
+        Entry jtiEntry = jtiKey != null ? entries.get(jtiKey) : null;
+        Entry subjectEntry = subjectKey != null ? entries.get(subjectKey) : null;
+        if (jtiEntry == null && subjectEntry == null) {
+            falsePositives.increment();
+            return false;
+        }
+        long now = System.currentTimeMillis() / 1000;
+        long issued = issuedAt != null ? issuedAt.getTime() / 1000 : 0;
+        if (covers(jtiEntry, issued, now) || covers(subjectEntry, issued, now)) {
+            revokedRequests.increment();
+            return true;
+        }
+        return false;
+    }
+
+    // Drops expired entries and filters; the table keeps rows until the tokens they cover are gone
+    @Scheduled(fixedDelayString = "${app.token-denylist.cleanup-interval-ms:60000}")
+    public void expire() {
+        long now = System.currentTimeMillis() / 1000;
+        entries.values().removeIf(entry -> entry.expiresAt() < now);
+        synchronized (this) {
+            List<SlotFilter> live = new ArrayList<>();
+            for (SlotFilter filter : filters) {
+                if (filter.endsAt > now) {
+                    live.add(filter);
+                }
+            }
+            if (live.size() != filters.length) {
+                filters = live.toArray(new SlotFilter[0]);
+            }
+        }
+        int deleted = jdbcTemplate.update("DELETE FROM revoked_tokens WHERE expires_at < ?", now);
+        if (deleted > 0) {
+            logger.debug("Deleted {} expired token revocations", deleted);
+        }
+    }
+
+    // Backstop for revocations announced while this node was not listening (channel disabled or down)
+    @Scheduled(fixedDelayString = "${app.token-denylist.resync-interval-ms:600000}",
+            initialDelayString = "${app.token-denylist.resync-interval-ms:600000}")
+    public void resync() {
+        reload();
+    }
+
+    private static boolean mightContain(SlotFilter[] current, String key) {
+        if (key == null) {
+            return false;
+        }
+        long hash = hash(key);
+        for (SlotFilter filter : current) {
+            if (filter.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean covers(Entry entry, long issued, long now) {
+        return entry != null && entry.expiresAt() >= now && issued < entry.revokedBefore();
+    }
+
+    private void store(String key, Long revokedBefore, long expiresAt) {
+        jdbcTemplate.update("INSERT INTO revoked_tokens (token_key, revoked_before, expires_at) VALUES (?, ?, ?) "
+                + "ON CONFLICT (token_key) DO UPDATE SET "
+                + "revoked_before = greatest(revoked_tokens.revoked_before, excluded.revoked_before), "
+                + "expires_at = greatest(revoked_tokens.expires_at, excluded.expires_at)",
+                key, revokedBefore, expiresAt);
+        // Loaded into memory here and on every other node once the caller's transaction commits
+        cacheInvalidationService.publish(TOPIC, key);
+    }
+
+    private void load(String key) {
+        jdbcTemplate.query("SELECT token_key, revoked_before, expires_at FROM revoked_tokens WHERE token_key = ?",
+                rs -> {
+                    synchronized (this) {
+                        SlotFilter[] grown = add(entries, filters, key, entry(rs));
+                        if (grown != filters) {
+                            filters = grown;
+                        }
+                    }
+                }, key);
+    }
+
+    // Startup, and after the invalidation channel reconnects (messages may have been missed). Built aside and
+    // swapped in, so probes keep using the previous state meanwhile.
+    private synchronized void reload() {
+        Map<String, Entry> freshEntries = new ConcurrentHashMap<>();
+        SlotFilter[][] freshFilters = { new SlotFilter[0] };
+        jdbcTemplate.query("SELECT token_key, revoked_before, expires_at FROM revoked_tokens WHERE expires_at >= ?",
+                rs -> {
+                    freshFilters[0] = add(freshEntries, freshFilters[0], rs.getString("token_key"), entry(rs));
+                }, System.currentTimeMillis() / 1000);
+        entries = freshEntries;
+        filters = freshFilters[0];
+        logger.debug("Loaded {} token revocations", freshEntries.size());
+    }
+
+    private static Entry entry(java.sql.ResultSet rs) throws java.sql.SQLException {
+        long revokedBefore = rs.getLong("revoked_before");
+        return new Entry(rs.wasNull() ? WHOLE_TOKEN : revokedBefore, rs.getLong("expires_at"));
+    }
+
+    // Adds to the exact map, then to the filter of the entry's expiry slot (so a probe that hits the filter
+    // finds the entry). Returns the filter array, grown when the slot had no filter yet.
+    private SlotFilter[] add(Map<String, Entry> target, SlotFilter[] current, String key, Entry entry) {
+        target.merge(key, entry, (a, b) -> new Entry(Math.max(a.revokedBefore(), b.revokedBefore()),
+                Math.max(a.expiresAt(), b.expiresAt())));
+        long slot = entry.expiresAt() / slotSeconds;
+        for (SlotFilter filter : current) {
+            if (filter.slot == slot) {
+                filter.add(hash(key));
+                return current;
+            }
+        }
+        SlotFilter created = new SlotFilter(slot, (slot + 1) * slotSeconds, bitsPerFilter, hashCount);
+        created.add(hash(key));
+        SlotFilter[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = created;
+        return grown;
+    }
+
+    // 64-bit FNV-1a, finished with the SplitMix64 mixer
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    // Bloom filter over the entries expiring within one slot. Bits are set with an atomic OR, read with plain
+    // volatile gets; the k positions come from double hashing the 64-bit key hash.
+    private static final class SlotFilter {
+        private final long slot;
+        private final long endsAt;
+        private final int bits;
+        private final int hashCount;
+        private final AtomicLongArray words;
+
+        SlotFilter(long slot, long endsAt, int bits, int hashCount) {
+            this.slot = slot;
+            this.endsAt = endsAt;
+            this.bits = bits;
+            this.hashCount = hashCount;
+            this.words = new AtomicLongArray((bits + 63) / 64);
+        }
+
+        void add(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                long mask = 1L << bit;
+                words.getAndAccumulate(bit >>> 6, mask, (current, m) -> current | m);
+            }
+        }
+
+        boolean mightContain(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -27,6 +27,8 @@ public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final OTPService otpService;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenDenylistService tokenDenylistService;
 
     private static final int MAX_FAILED_ATTEMPTS = 5;
     private static final int LOCK_TIME_DURATION_HOURS = 1;
@@ -133,6 +135,24 @@ public class UserService {
         return false;
     }
 
+    @Transactional(readOnly = true)
+    public User getUserByUsername(String username) {
+        return userRepository.findByUsername(username)
+                .orElseThrow(() -> new com.passkind.backend.exception.ResourceNotFoundException("User not found"));
+    }
+
+    @Transactional(readOnly = true)
+    public java.util.List<User> getAllUsers() {
+        return userRepository.findAll();
+    }
+
+    @Transactional(readOnly = true)
+    public User getUserById(java.util.UUID id) {
+        return userRepository.findById(id)
+                .orElseThrow(() -> new com.passkind.backend.exception.ResourceNotFoundException(
+                        "User not found with id: " + id));
+    }
+
     public boolean isAccountLocked(User user) {
         if (!user.getIsLocked()) {
             return false;
@@ -174,6 +194,9 @@ public class UserService {
 
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
         userRepository.save(user);
+        // Sessions opened with the old password end when their access token expires
+        refreshTokenService.revokeAll(user);
+        tokenDenylistService.revokeIssuedBefore(user.getUsername());
     }
 
     @Transactional
@@ -191,5 +214,7 @@ public class UserService {
 
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
         userRepository.save(user);
+        refreshTokenService.revokeAll(user);
+        tokenDenylistService.revokeIssuedBefore(user.getUsername());
     }
 }
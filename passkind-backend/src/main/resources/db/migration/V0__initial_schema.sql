@@ -0,0 +1,82 @@
+-- Schema as Hibernate (ddl-auto: update) created it before the schema moved to Flyway. Databases created that
+-- way are baselined at this version (spring.flyway.baseline-on-migrate) and skip it; V1 onwards upgrades both.
+
+CREATE TABLE users (
+    id uuid NOT NULL,
+    username varchar(255) NOT NULL UNIQUE,
+    email varchar(255) NOT NULL UNIQUE,
+    password varchar(255) NOT NULL,
+    full_name varchar(255),
+    phone_number bigint,
+    preferences TEXT,
+    is_email_verified BOOLEAN DEFAULT false,
+    is_locked BOOLEAN DEFAULT false,
+    failed_login_attempts INTEGER DEFAULT 0,
+    lock_until timestamp(6),
+    last_login_date timestamp(6),
+    created_date timestamp(6),
+    modified_date timestamp(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE user_roles (
+    user_id uuid NOT NULL REFERENCES users,
+    roles varchar(255) CHECK (roles IN ('ROLE_USER', 'ROLE_ADMIN'))
+);
+
+CREATE TABLE secrets (
+    id uuid NOT NULL,
+    user_id uuid NOT NULL REFERENCES users,
+    name varchar(255) NOT NULL,
+    username varchar(255),
+    email varchar(255),
+    encrypted_value TEXT NOT NULL,
+    metadata jsonb,
+    created_at timestamp(6),
+    updated_at timestamp(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE secret_tags (
+    secret_id uuid NOT NULL REFERENCES secrets,
+    tags varchar(255)
+);
+
+CREATE TABLE secret_history (
+    id uuid NOT NULL,
+    secret_id uuid NOT NULL REFERENCES secrets,
+    change_type varchar(255) NOT NULL,
+    previous_data jsonb,
+    modified_by_user_id uuid REFERENCES users,
+    modified_at timestamp(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE secret_shares (
+    id bigserial NOT NULL,
+    secret_id uuid NOT NULL REFERENCES secrets,
+    user_id uuid NOT NULL REFERENCES users,
+    permission varchar(255) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE otp (
+    id bigserial NOT NULL,
+    email varchar(255) NOT NULL,
+    otp_code varchar(255) NOT NULL,
+    verified boolean NOT NULL,
+    expiry_time timestamp(6) NOT NULL,
+    created_at timestamp(6),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE audit_logs (
+    id bigserial NOT NULL,
+    username varchar(255) NOT NULL,
+    action varchar(255) NOT NULL,
+    resource_type varchar(255) NOT NULL,
+    resource_id varchar(255),
+    details TEXT,
+    "timestamp" timestamp(6),
+    PRIMARY KEY (id)
+);
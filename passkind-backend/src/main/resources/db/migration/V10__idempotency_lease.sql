@@ -0,0 +1,4 @@
+-- Claims are held by a lease the executing node keeps extending (see IdempotencyService), rather than
+-- being presumed abandoned once they are older than the duplicate wait timeout.
+ALTER TABLE idempotency_keys ADD COLUMN lease_expires_at timestamp(6) NOT NULL DEFAULT now();
+ALTER TABLE idempotency_keys ALTER COLUMN lease_expires_at DROP DEFAULT;
@@ -0,0 +1,4 @@
+-- Leads the rollup key with username so the per-user range lookup (username = ? AND day BETWEEN ? AND ?)
+-- is an index range scan rather than a scan of every user's days.
+ALTER TABLE audit_daily_rollups DROP CONSTRAINT audit_daily_rollups_pkey;
+ALTER TABLE audit_daily_rollups ADD PRIMARY KEY (username, day, action, resource_type);
@@ -0,0 +1,76 @@
+-- Brings the V0 schema up to date: per-user data keys, bytea ciphertext, one share per user and secret,
+-- audit_logs partitioned by month and the audit daily rollups.
+
+CREATE TABLE data_keys (
+    id uuid NOT NULL,
+    user_id uuid NOT NULL REFERENCES users,
+    master_key_id varchar(255) NOT NULL,
+    wrapped_key TEXT NOT NULL,
+    active boolean NOT NULL,
+    created_at timestamp(6),
+    PRIMARY KEY (id)
+);
+
+-- Ciphertext lives in encrypted_data; encrypted_value only holds legacy Base64 rows awaiting migration
+ALTER TABLE secrets ALTER COLUMN encrypted_value DROP NOT NULL;
+ALTER TABLE secrets ADD COLUMN encrypted_data bytea;
+ALTER TABLE secrets ADD COLUMN data_key_id uuid;
+
+ALTER TABLE secret_history ADD COLUMN data_key_id uuid;
+
+-- Nothing stopped a secret being shared twice with the same user; the latest share wins
+DELETE FROM secret_shares s USING secret_shares newer
+WHERE newer.secret_id = s.secret_id AND newer.user_id = s.user_id AND newer.id > s.id;
+
+ALTER TABLE secret_shares ADD CONSTRAINT uk_secret_shares_secret_user UNIQUE (secret_id, user_id);
+
+CREATE INDEX idx_secret_shares_user_secret ON secret_shares (user_id, secret_id);
+
+-- audit_logs becomes range-partitioned by month, covering every month it already has rows for. The primary
+-- key must include the partition column. Further partitions are created and retired by AuditRetentionService.
+ALTER TABLE audit_logs RENAME TO audit_logs_unpartitioned;
+
+CREATE TABLE audit_logs (
+    id bigint GENERATED BY DEFAULT AS IDENTITY,
+    username varchar(255) NOT NULL,
+    action varchar(255) NOT NULL,
+    resource_type varchar(255) NOT NULL,
+    resource_id varchar(255),
+    details TEXT,
+    "timestamp" timestamp(6) NOT NULL,
+    PRIMARY KEY (id, "timestamp")
+) PARTITION BY RANGE ("timestamp");
+
+-- Catches rows outside every monthly range instead of failing the insert
+CREATE TABLE audit_logs_default PARTITION OF audit_logs DEFAULT;
+
+DO $$
+DECLARE
+    bucket date := date_trunc('month', COALESCE((SELECT min("timestamp") FROM audit_logs_unpartitioned), now()));
+BEGIN
+    WHILE bucket <= date_trunc('month', now()) + interval '1 month' LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF audit_logs FOR VALUES FROM (%L) TO (%L)',
+                'audit_logs_' || to_char(bucket, 'YYYY_MM'), bucket, bucket + interval '1 month');
+        bucket := bucket + interval '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO audit_logs (id, username, action, resource_type, resource_id, details, "timestamp")
+SELECT id, username, action, resource_type, resource_id, details, COALESCE("timestamp", now())
+FROM audit_logs_unpartitioned;
+
+SELECT setval(pg_get_serial_sequence('audit_logs', 'id'), (SELECT COALESCE(max(id), 0) + 1 FROM audit_logs), false);
+
+DROP TABLE audit_logs_unpartitioned;
+
+-- Backs the per-user history lookup; created on the parent so every partition gets it
+CREATE INDEX idx_audit_logs_username_timestamp ON audit_logs (username, "timestamp");
+
+CREATE TABLE audit_daily_rollups (
+    username varchar(255) NOT NULL,
+    day date NOT NULL,
+    action varchar(255) NOT NULL,
+    resource_type varchar(255) NOT NULL,
+    event_count bigint NOT NULL,
+    PRIMARY KEY (day, action, resource_type, username)
+);
@@ -0,0 +1,13 @@
+-- Indexes for the per-request lookups. IF NOT EXISTS because baselined databases may have some of them.
+
+-- Owner listings and the accessible-secrets keyset (owner, updated_at, id)
+CREATE INDEX IF NOT EXISTS idx_secrets_user_updated ON secrets (user_id, updated_at, id);
+
+-- History of one secret, newest first
+CREATE INDEX IF NOT EXISTS idx_secret_history_secret_modified ON secret_history (secret_id, modified_at);
+
+-- Latest OTP per email, and OTP verification
+CREATE INDEX IF NOT EXISTS idx_otp_email_created ON otp (email, created_at);
+
+-- Active data key per user
+CREATE INDEX IF NOT EXISTS idx_data_keys_user_created ON data_keys (user_id, created_at);
@@ -0,0 +1,34 @@
+-- Replaces the secret_tags element collection with a per-user tag catalog and a join table.
+
+CREATE TABLE tags (
+    id bigserial NOT NULL,
+    user_id uuid NOT NULL REFERENCES users,
+    name varchar(255) NOT NULL,
+    usage_count bigint NOT NULL DEFAULT 0,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_tags_user_name UNIQUE (user_id, name)
+);
+
+CREATE TABLE secret_tag_links (
+    secret_id uuid NOT NULL REFERENCES secrets,
+    tag_id bigint NOT NULL REFERENCES tags,
+    PRIMARY KEY (secret_id, tag_id)
+);
+
+-- Tag filters and facets go from tag to secrets
+CREATE INDEX idx_secret_tag_links_tag_secret ON secret_tag_links (tag_id, secret_id);
+
+INSERT INTO tags (user_id, name)
+SELECT DISTINCT s.user_id, btrim(st.tags)
+FROM secret_tags st JOIN secrets s ON s.id = st.secret_id
+WHERE st.tags IS NOT NULL AND btrim(st.tags) <> '';
+
+INSERT INTO secret_tag_links (secret_id, tag_id)
+SELECT DISTINCT st.secret_id, t.id
+FROM secret_tags st
+JOIN secrets s ON s.id = st.secret_id
+JOIN tags t ON t.user_id = s.user_id AND t.name = btrim(st.tags);
+
+UPDATE tags t SET usage_count = (SELECT count(*) FROM secret_tag_links l WHERE l.tag_id = t.id);
+
+DROP TABLE secret_tags;
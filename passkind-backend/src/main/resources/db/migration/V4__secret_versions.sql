@@ -0,0 +1,7 @@
+-- Optimistic locking for secrets. History snapshots record the version they describe, so an update sent
+-- against an older version can be merged with what changed since.
+
+ALTER TABLE secrets ADD COLUMN version bigint NOT NULL DEFAULT 0;
+
+-- Null for snapshots taken before versioning
+ALTER TABLE secret_history ADD COLUMN secret_version bigint;
@@ -0,0 +1,3 @@
+-- Metadata queries: key=value filters are containment (@>) lookups, which jsonb_path_ops answers with a
+-- smaller index than the default jsonb_ops. Key-exists and prefix filters are checked on the rows it returns.
+CREATE INDEX IF NOT EXISTS idx_secrets_metadata ON secrets USING gin (metadata jsonb_path_ops);
@@ -0,0 +1,14 @@
+-- Responses of requests sent with an Idempotency-Key, replayed for retries (see IdempotencyService).
+-- A row without status is a claim by the node currently executing the request.
+CREATE TABLE idempotency_keys (
+    username varchar(255) NOT NULL,
+    idempotency_key varchar(255) NOT NULL,
+    fingerprint varchar(64) NOT NULL,
+    status integer,
+    headers jsonb,
+    body bytea,
+    created_at timestamp(6) NOT NULL,
+    PRIMARY KEY (username, idempotency_key)
+);
+
+CREATE INDEX idx_idempotency_keys_created ON idempotency_keys (created_at);
@@ -0,0 +1,17 @@
+-- Rotating refresh tokens (see RefreshTokenService). Only an HMAC of each token is stored. Every rotation
+-- adds a row to the same family; used_at marks a token that was already exchanged, so presenting it again
+-- revokes the whole family.
+CREATE TABLE refresh_tokens (
+    id uuid NOT NULL PRIMARY KEY,
+    user_id uuid NOT NULL REFERENCES users,
+    family_id uuid NOT NULL,
+    token_hash varchar(64) NOT NULL UNIQUE,
+    created_at timestamp(6) NOT NULL,
+    expires_at timestamp(6) NOT NULL,
+    used_at timestamp(6),
+    revoked_at timestamp(6)
+);
+
+CREATE INDEX idx_refresh_tokens_family ON refresh_tokens (family_id);
+CREATE INDEX idx_refresh_tokens_user ON refresh_tokens (user_id);
+CREATE INDEX idx_refresh_tokens_expires ON refresh_tokens (expires_at);
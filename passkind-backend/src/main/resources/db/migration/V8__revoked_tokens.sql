@@ -0,0 +1,10 @@
+-- Access token revocations (see TokenDenylistService), as epoch seconds. "jti:<id>" rows revoke one token
+-- (revoked_before is null); "sub:<username>" rows revoke that subject's tokens issued before revoked_before.
+-- A row is kept until every token it covers has expired.
+CREATE TABLE revoked_tokens (
+    token_key varchar(300) NOT NULL PRIMARY KEY,
+    revoked_before bigint,
+    expires_at bigint NOT NULL
+);
+
+CREATE INDEX idx_revoked_tokens_expires ON revoked_tokens (expires_at);
@@ -0,0 +1,19 @@
+-- Background vault exports (see ExportJobService). The artifact itself is a file in app.export.dir;
+-- file_key is the per-job key of encrypted JSON artifacts, wrapped with the owner's data key.
+CREATE TABLE export_jobs (
+    id uuid NOT NULL PRIMARY KEY,
+    user_id uuid NOT NULL REFERENCES users,
+    format varchar(16) NOT NULL,
+    status varchar(16) NOT NULL,
+    total integer,
+    processed integer NOT NULL DEFAULT 0,
+    size_bytes bigint,
+    file_key text,
+    error varchar(255),
+    created_at timestamp(6) NOT NULL,
+    finished_at timestamp(6),
+    expires_at timestamp(6) NOT NULL
+);
+
+CREATE INDEX idx_export_jobs_user ON export_jobs (user_id);
+CREATE INDEX idx_export_jobs_expires ON export_jobs (expires_at);
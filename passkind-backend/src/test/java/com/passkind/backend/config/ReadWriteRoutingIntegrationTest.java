@@ -0,0 +1,224 @@
+package com.passkind.backend.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.passkind.backend.service.UserService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.security.Principal;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Routing against two real Postgres instances. The "replica" is a separate database with the same schema and no
+// replication, so where a query ran shows in what it returns: rows written through the app exist only on the
+// primary, and the replica's pool is read-only, so a write routed there fails.
+@SpringBootTest(properties = {
+        "app.datasource.sticky-window-ms=" + ReadWriteRoutingIntegrationTest.STICKY_WINDOW_MS,
+        "app.rate-limit.enabled=false",
+        "spring.mail.username=test",
+        "spring.mail.password=test",
+        "spring.mail.host=localhost",
+        "app.audit.archive-dir=${java.io.tmpdir}/passkind-routing-test-archive",
+        "ENCRYPTION_KEY=routingTestEncryptionKey12345678" })
+@AutoConfigureMockMvc
+class ReadWriteRoutingIntegrationTest {
+
+    static final long STICKY_WINDOW_MS = 1500;
+    private static final String PASSWORD = "Passw0rd!";
+
+    private static final EmbeddedPostgres primary = start();
+    private static final EmbeddedPostgres replica = start();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private final JdbcTemplate primaryJdbc = new JdbcTemplate(primary.getPostgresDatabase());
+    private final JdbcTemplate replicaJdbc = new JdbcTemplate(replica.getPostgresDatabase());
+    private String username;
+
+    @DynamicPropertySource
+    static void databases(DynamicPropertyRegistry registry) {
+        // The app migrates the primary itself; the replica gets the schema it would have replicated
+        Flyway.configure().dataSource(replica.getPostgresDatabase()).load().migrate();
+        registry.add("spring.datasource.url", () -> primary.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+        registry.add("app.datasource.replica.urls", () -> replica.getJdbcUrl("postgres", "postgres"));
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        primary.close();
+        replica.close();
+    }
+
+    // A verified account, present on both sides as it would be once replication caught up
+    @BeforeEach
+    void createUser() {
+        username = "router" + UUID.randomUUID().toString().substring(0, 8);
+        UUID id = UUID.randomUUID();
+        String hash = passwordEncoder.encode(PASSWORD);
+        for (JdbcTemplate jdbc : List.of(primaryJdbc, replicaJdbc)) {
+            jdbc.update("INSERT INTO users (id, username, email, password, is_email_verified, created_date) "
+                    + "VALUES (?, ?, ?, ?, true, now())", id, username, username + "@example.com", hash);
+            jdbc.update("INSERT INTO user_roles (user_id, roles) VALUES (?, 'ROLE_USER')", id);
+        }
+    }
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    // A read-only transaction (served by the replica) and then a write in the same request: the write must get
+    // its own primary connection rather than reuse the one the request started with
+    @Test
+    void writeAfterReplicaReadInOneRequestGoesToPrimary() throws Exception {
+        mockMvc.perform(post("/test/read-then-write").with(user(username)))
+                .andExpect(status().isOk());
+
+        assertThat(lastLogin(primaryJdbc)).isNotNull();
+        assertThat(lastLogin(replicaJdbc)).isNull();
+    }
+
+    @Test
+    void loginRecordsTheLoginOnPrimary() throws Exception {
+        login();
+
+        assertThat(lastLogin(primaryJdbc)).isNotNull();
+        assertThat(lastLogin(replicaJdbc)).isNull();
+    }
+
+    // The secret exists only on the primary, so the listing shows whether it was served from there
+    @Test
+    void writerReadsFromPrimaryForTheStickyWindow() throws Exception {
+        String token = login();
+        Thread.sleep(STICKY_WINDOW_MS + 500);
+
+        mockMvc.perform(post("/api/secrets").header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json(Map.of("name", "routed", "value", "v", "type", "PASSWORD"))))
+                .andExpect(status().isOk());
+        assertThat(listSecrets(token)).hasSize(1);
+
+        Thread.sleep(STICKY_WINDOW_MS + 500);
+        assertThat(listSecrets(token)).isEmpty();
+    }
+
+    @Test
+    void onlyTransactionsThatWroteMakeTheUserSticky() throws Exception {
+        Thread.sleep(STICKY_WINDOW_MS + 500);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(username, null, Collections.emptyList()));
+        JdbcTemplate routed = new JdbcTemplate(dataSource);
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        readWrite.executeWithoutResult(status -> routed.queryForObject("SELECT count(*) FROM users", Long.class));
+        assertThat(readOnlyServerPort(routed)).isEqualTo(replica.getPort());
+
+        readWrite.executeWithoutResult(status -> routed.update(
+                "UPDATE users SET modified_date = now() WHERE username = ?", username));
+        assertThat(readOnlyServerPort(routed)).isEqualTo(primary.getPort());
+    }
+
+    private Timestamp lastLogin(JdbcTemplate jdbc) {
+        return jdbc.queryForObject("SELECT last_login_date FROM users WHERE username = ?", Timestamp.class, username);
+    }
+
+    private int readOnlyServerPort(JdbcTemplate routed) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return readOnly.execute(status -> routed.queryForObject("SELECT inet_server_port()", Integer.class));
+    }
+
+    private String login() throws Exception {
+        String body = mockMvc.perform(post("/api/auth/login").contentType(MediaType.APPLICATION_JSON)
+                .content(json(Map.of("username", username, "password", PASSWORD))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("accessToken").asText();
+    }
+
+    private JsonNode listSecrets(String token) throws Exception {
+        String body = mockMvc.perform(get("/api/secrets").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private String json(Object value) throws Exception {
+        return objectMapper.writeValueAsString(value);
+    }
+
+    @TestConfiguration
+    static class ReadThenWriteEndpoint {
+
+        @RestController
+        static class ReadThenWriteController {
+
+            private final UserService userService;
+
+            ReadThenWriteController(UserService userService) {
+                this.userService = userService;
+            }
+
+            @PostMapping("/test/read-then-write")
+            void readThenWrite(Principal principal) {
+                userService.getUserByUsername(principal.getName());
+                userService.handleSuccessfulLogin(principal.getName());
+            }
+        }
+    }
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.start();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.passkind.benchmarks;
+
+import com.passkind.backend.service.BreachCorpus;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Lookups per second against a memory-mapped corpus. By default a sorted SHA-1 corpus of corpusMegabytes is
+// generated in the temp directory (and deleted afterwards); -Dbreach.corpus=<file> benchmarks a real HIBP
+// download instead, with hits sampled from it. Runs are warm-cache: the generated file was just written.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BreachCorpusBenchmark {
+
+    private static final int SAMPLES = 4096;
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+    @Param({ "2048" })
+    private int corpusMegabytes;
+
+    private Path file;
+    private boolean generated;
+    private BreachCorpus corpus;
+    private final byte[][] hits = new byte[SAMPLES][];
+    private final byte[][] misses = new byte[SAMPLES][];
+    private int index;
+
+    @Setup
+    public void setUp() throws IOException {
+        String supplied = System.getProperty("breach.corpus");
+        SplittableRandom random = new SplittableRandom(42);
+        if (supplied != null) {
+            file = Path.of(supplied);
+            sample(random);
+        } else {
+            file = Files.createTempFile("breach-corpus", ".txt");
+            generated = true;
+            generate(random);
+        }
+        corpus = BreachCorpus.open(file, BreachCorpus.Algorithm.SHA1);
+        for (int i = 0; i < SAMPLES; i++) {
+            // Practically never in a corpus of a few hundred million hashes
+            misses[i] = new byte[20];
+            random.nextBytes(misses[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (generated) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public long hit() {
+        return corpus.countHash(hits[index++ & (SAMPLES - 1)]);
+    }
+
+    @Benchmark
+    public long miss() {
+        return corpus.countHash(misses[index++ & (SAMPLES - 1)]);
+    }
+
+    // Including the SHA-1 of the password, as the create/update check does
+    @Benchmark
+    public long password() {
+        return corpus.count("password-" + (index++ & (SAMPLES - 1)));
+    }
+
+    // Sorted "HASH:COUNT" lines: the top 64 bits step evenly through the hash space with random jitter, the
+    // rest is random. Every n-th hash is kept as a hit sample.
+    private void generate(SplittableRandom random) throws IOException {
+        long lines = corpusMegabytes * 1024L * 1024L / 47;
+        long step = Long.divideUnsigned(-1L, lines);
+        long every = Math.max(1, lines / SAMPLES);
+        byte[] hash = new byte[20];
+        byte[] line = new byte[48];
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 20)) {
+            for (long i = 0; i < lines; i++) {
+                long high = i * step + random.nextLong(step);
+                for (int b = 0; b < 8; b++) {
+                    hash[b] = (byte) (high >>> (56 - 8 * b));
+                }
+                for (int b = 8; b < 20; b++) {
+                    hash[b] = (byte) random.nextInt(256);
+                }
+                int length = format(hash, 1 + random.nextInt(99_999), line);
+                out.write(line, 0, length);
+                if (i % every == 0 && i / every < SAMPLES) {
+                    hits[(int) (i / every)] = hash.clone();
+                }
+            }
+        }
+        for (int i = 0; i < SAMPLES; i++) {
+            if (hits[i] == null) {
+                hits[i] = hits[i % (int) Math.min(lines, SAMPLES)];
+            }
+        }
+    }
+
+    // Hits from a supplied file: the hash of the line following random offsets
+    private void sample(SplittableRandom random) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(128);
+            for (int i = 0; i < SAMPLES; i++) {
+                buffer.clear();
+                channel.read(buffer, random.nextLong(Math.max(1, size - 128)));
+                String text = new String(buffer.array(), 0, buffer.position());
+                String next = text.substring(text.indexOf('\n') + 1);
+                hits[i] = HexFormat.of().parseHex(next.substring(0, 40));
+            }
+        }
+    }
+
+    private static int format(byte[] hash, int count, byte[] line) {
+        int position = 0;
+        for (byte b : hash) {
+            line[position++] = HEX[(b >>> 4) & 0xf];
+            line[position++] = HEX[b & 0xf];
+        }
+        line[position++] = ':';
+        String digits = Integer.toString(count);
+        for (int i = 0; i < digits.length(); i++) {
+            line[position++] = (byte) digits.charAt(i);
+        }
+        line[position++] = '\r';
+        line[position++] = '\n';
+        return position;
+    }
+}
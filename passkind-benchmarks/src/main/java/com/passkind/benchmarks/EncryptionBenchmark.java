@@ -0,0 +1,50 @@
+package com.passkind.benchmarks;
+
+import com.passkind.backend.service.EncryptionService;
+import com.passkind.backend.entity.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncryptionBenchmark {
+
+    @Param({ "16", "256", "4096", "65536" })
+    private int payloadSize;
+
+    private EncryptionService encryptionService;
+    private User owner;
+    private String plaintext;
+    private byte[] ciphertext;
+    private String textCiphertext;
+
+    @Setup
+    public void setUp() throws Exception {
+        encryptionService = Fixtures.encryptionService();
+        owner = Fixtures.owner();
+        plaintext = "x".repeat(payloadSize);
+        ciphertext = encryptionService.encrypt(plaintext, owner);
+        textCiphertext = encryptionService.encryptToText(plaintext, owner);
+    }
+
+    @Benchmark
+    public byte[] encrypt() throws Exception {
+        return encryptionService.encrypt(plaintext, owner);
+    }
+
+    @Benchmark
+    public String decrypt() throws Exception {
+        return encryptionService.decrypt(ciphertext);
+    }
+
+    // Base64 text envelope, as stored before the bytea column
+    @Benchmark
+    public String decryptText() throws Exception {
+        return encryptionService.decrypt(textCiphertext);
+    }
+}
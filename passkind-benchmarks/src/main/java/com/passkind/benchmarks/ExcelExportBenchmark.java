@@ -0,0 +1,78 @@
+package com.passkind.benchmarks;
+
+import com.passkind.backend.entity.Secret;
+import com.passkind.backend.entity.User;
+import com.passkind.backend.metrics.ExportMetrics;
+import com.passkind.backend.repository.AuditLogRepository;
+import com.passkind.backend.repository.SecretHistoryRepository;
+import com.passkind.backend.repository.SecretRepository;
+import com.passkind.backend.repository.SecretShareRepository;
+import com.passkind.backend.repository.TagRepository;
+import com.passkind.backend.repository.UserRepository;
+import com.passkind.backend.service.SecretAclService;
+import com.passkind.backend.service.SecretService;
+import com.passkind.backend.service.TagService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Full SecretService.exportSecretsAsExcel run (decrypt, POI workbook, autosize, POIFS encryption).
+// Repositories are stubbed and password verification is a no-op so only the export work is measured.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExcelExportBenchmark {
+
+    @Param({ "100", "10000", "50000" })
+    private int secrets;
+
+    private SecretService secretService;
+
+    @Setup
+    @SuppressWarnings("deprecation")
+    public void setUp() {
+        User owner = Fixtures.owner();
+        List<Secret> vault = Fixtures.secrets(owner, secrets);
+
+        UserRepository userRepository = Stubs.of(UserRepository.class,
+                Map.of("findByUsername", args -> Optional.of(owner)));
+        SecretRepository secretRepository = Stubs.of(SecretRepository.class,
+                Map.of("findByOwner", args -> vault));
+        AuditLogRepository auditLogRepository = Stubs.of(AuditLogRepository.class,
+                Map.of("save", args -> args[0]));
+        SecretHistoryRepository secretHistoryRepository = Stubs.of(SecretHistoryRepository.class, Map.of());
+        SecretShareRepository secretShareRepository = Stubs.of(SecretShareRepository.class, Map.of());
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        HikariDataSource pool = new HikariDataSource();
+        secretService = new SecretService(secretRepository, userRepository,
+                Fixtures.encryptionService(), auditLogRepository,
+                secretHistoryRepository, NoOpPasswordEncoder.getInstance(), new ExportMetrics(meterRegistry),
+                secretShareRepository, new SecretAclService(secretShareRepository, userRepository,
+                        Fixtures.cacheInvalidationService(), pool, Fixtures.routingDataSource(pool),
+                        meterRegistry, 1, 1),
+                new TagService(Stubs.of(TagRepository.class, Map.of())));
+
+        // JMH runs benchmarks on its own worker threads
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(Fixtures.USERNAME, null, Collections.emptyList()));
+    }
+
+    @Benchmark
+    public byte[] exportSecretsAsExcel() throws Exception {
+        return secretService.exportSecretsAsExcel(Fixtures.PASSWORD);
+    }
+}
@@ -0,0 +1,116 @@
+package com.passkind.benchmarks;
+
+import com.passkind.backend.config.ReadWriteRoutingDataSource;
+import com.passkind.backend.entity.Secret;
+import com.passkind.backend.entity.Tag;
+import com.passkind.backend.entity.User;
+import com.passkind.backend.repository.DataKeyRepository;
+import com.passkind.backend.service.CacheInvalidationService;
+import com.passkind.backend.service.EncryptionService;
+import com.passkind.backend.service.KeyManagementService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+final class Fixtures {
+
+    static final String ENCRYPTION_KEY = "mySecretEncryptionKey12345678901";
+    static final String JWT_SECRET = "myVeryLongSecretKeyForJWTTokenGenerationThatIsSecureEnoughForHS512Algorithm!!";
+    static final String USERNAME = "benchmark-user";
+    static final String PASSWORD = "correct-horse-battery-staple";
+
+    private static EncryptionService encryptionService;
+
+    private Fixtures() {
+    }
+
+    // Shared so ciphertext built by secrets() stays decryptable: data keys live only in this instance's cache
+    static synchronized EncryptionService encryptionService() {
+        if (encryptionService == null) {
+            DataKeyRepository dataKeys = Stubs.of(DataKeyRepository.class, Map.of(
+                    "findFirstByUser_IdAndActiveTrueOrderByCreatedAtDesc", args -> Optional.empty(),
+                    "save", args -> args[0]));
+            PlatformTransactionManager transactions = Stubs.of(PlatformTransactionManager.class, Map.of(
+                    "getTransaction", args -> new SimpleTransactionStatus(),
+                    "commit", args -> null,
+                    "rollback", args -> null));
+            KeyManagementService keys = new KeyManagementService(dataKeys, transactions,
+                    cacheInvalidationService(), ENCRYPTION_KEY, "", "default", 10_000);
+            encryptionService = new EncryptionService(keys, new SimpleMeterRegistry());
+        }
+        return encryptionService;
+    }
+
+    // Single node: the channel is disabled and the never-started pool is not touched
+    static CacheInvalidationService cacheInvalidationService() {
+        HikariDataSource pool = new HikariDataSource();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        return new CacheInvalidationService(pool, routingDataSource(pool), meterRegistry,
+                false, "passkind_invalidation", 1000, 5000);
+    }
+
+    // No replicas: everything is routed to the given (unstarted) pool
+    static ReadWriteRoutingDataSource routingDataSource(HikariDataSource pool) {
+        return new ReadWriteRoutingDataSource(pool, List.of(), Duration.ZERO, new SimpleMeterRegistry());
+    }
+
+    static User owner() {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setUsername(USERNAME);
+        user.setEmail(USERNAME + "@example.com");
+        user.setPassword(PASSWORD);
+        return user;
+    }
+
+    static List<Secret> secrets(User owner, int count) {
+        EncryptionService encryptionService = encryptionService();
+        List<Secret> secrets = new ArrayList<>(count);
+        Map<String, Tag> catalog = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("url", "https://service-" + i + ".example.com/login");
+            metadata.put("environment", i % 2 == 0 ? "prod" : "staging");
+
+            Secret secret = new Secret();
+            secret.setId(UUID.randomUUID());
+            secret.setName("Secret " + i);
+            try {
+                secret.setEncryptedData(encryptionService.encrypt("P@ssw0rd-" + i, owner));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            secret.setOwner(owner);
+            secret.setMetadata(metadata);
+            secret.setTags(new LinkedHashSet<>(
+                    List.of(tag(catalog, owner, "work"), tag(catalog, owner, "tag-" + (i % 50)))));
+            secret.setEmail("user" + i + "@example.com");
+            secret.setUsername("login" + i);
+            secret.setCreatedAt(LocalDateTime.now().minusDays(i % 365));
+            secret.setUpdatedAt(LocalDateTime.now());
+            secrets.add(secret);
+        }
+        return secrets;
+    }
+
+    private static Tag tag(Map<String, Tag> catalog, User owner, String name) {
+        return catalog.computeIfAbsent(name, n -> {
+            Tag tag = new Tag();
+            tag.setId((long) catalog.size() + 1);
+            tag.setOwner(owner);
+            tag.setName(n);
+            return tag;
+        });
+    }
+}
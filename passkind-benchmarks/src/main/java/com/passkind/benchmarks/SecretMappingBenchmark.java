@@ -0,0 +1,49 @@
+package com.passkind.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.passkind.backend.config.JacksonConfig;
+import com.passkind.backend.controller.SecretController;
+import com.passkind.backend.controller.SecretController.SecretResponse;
+import com.passkind.backend.entity.Secret;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+// One row of GET /api/secrets: entity to DTO mapping, then Jackson serialization with the application's modules
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SecretMappingBenchmark {
+
+    private Secret secret;
+    private SecretResponse response;
+    private ObjectWriter writer;
+
+    @Setup
+    public void setUp() {
+        secret = Fixtures.secrets(Fixtures.owner(), 1).get(0);
+        response = SecretController.mapToResponse(secret);
+        writer = Jackson2ObjectMapperBuilder.json().timeZone("Asia/Kolkata")
+                .modulesToInstall(new JacksonConfig().blackbirdModule()).build()
+                .writerFor(SecretResponse.class);
+    }
+
+    @Benchmark
+    public SecretResponse mapToResponse() {
+        return SecretController.mapToResponse(secret);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return writer.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] mapAndSerialize() throws Exception {
+        return writer.writeValueAsBytes(SecretController.mapToResponse(secret));
+    }
+}
@@ -0,0 +1,105 @@
+package com.passkind.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.passkind.backend.config.JacksonConfig;
+import com.passkind.backend.controller.SecretController;
+import com.passkind.backend.controller.SecretController.SecretResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Serializes one GET /api/secrets response worth of SecretResponse objects, comparing the old default
+// reflection-based writer with the typed, Blackbird-tuned writer SecretController streams with, with and without gzip.
+// wireBytes is the body size of one response; JMH sums EVENTS counters, so divide by Cnt.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SecretSerializationBenchmark {
+
+    @Param({ "10000" })
+    private int secrets;
+
+    private List<SecretResponse> responses;
+    private ObjectWriter reflectionListWriter;
+    private ObjectWriter streamingWriter;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class WireBytes {
+        public long wireBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            wireBytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        ObjectMapper defaultMapper = Jackson2ObjectMapperBuilder.json().timeZone("Asia/Kolkata").build();
+        ObjectMapper tunedMapper = Jackson2ObjectMapperBuilder.json().timeZone("Asia/Kolkata")
+                .modulesToInstall(new JacksonConfig().blackbirdModule()).build();
+
+        reflectionListWriter = defaultMapper.writerFor(defaultMapper.getTypeFactory()
+                .constructCollectionType(List.class, SecretResponse.class));
+        streamingWriter = tunedMapper.writerFor(tunedMapper.getTypeFactory()
+                .constructCollectionType(List.class, SecretResponse.class));
+
+        responses = Fixtures.secrets(Fixtures.owner(), secrets).stream()
+                .map(SecretController::mapToResponse)
+                .toList();
+    }
+
+    @Benchmark
+    public long reflectionList(WireBytes counters) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        reflectionListWriter.writeValue(out, responses);
+        counters.wireBytes = out.count;
+        return out.count;
+    }
+
+    @Benchmark
+    public long streamed(WireBytes counters) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        writeStreamed(out);
+        counters.wireBytes = out.count;
+        return out.count;
+    }
+
+    @Benchmark
+    public long streamedGzip(WireBytes counters) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+            writeStreamed(gzip);
+        }
+        counters.wireBytes = out.count;
+        return out.count;
+    }
+
+    private void writeStreamed(OutputStream out) throws IOException {
+        streamingWriter.writeValue(out, responses);
+    }
+
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
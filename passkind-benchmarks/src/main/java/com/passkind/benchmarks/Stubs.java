@@ -0,0 +1,33 @@
+package com.passkind.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.function.Function;
+
+// Minimal repository stand-ins so service code can be benchmarked without a database
+final class Stubs {
+
+    private Stubs() {
+    }
+
+    static <T> T of(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                (self, method, args) -> {
+                    Function<Object[], Object> answer = answers.get(method.getName());
+                    if (answer != null) {
+                        return answer.apply(args);
+                    }
+                    switch (method.getName()) {
+                        case "toString":
+                            return type.getSimpleName() + " stub";
+                        case "hashCode":
+                            return System.identityHashCode(self);
+                        case "equals":
+                            return self == args[0];
+                        default:
+                            throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+                    }
+                });
+        return type.cast(proxy);
+    }
+}
@@ -1,8 +1,33 @@
-import React, { useMemo } from "react";
+import React, { useEffect, useMemo, useState } from "react";
+import api from "../utils/api";
+import { ENDPOINTS } from "../constants/api";
 
 const PasswordStrengthMeter = ({ password }) => {
+  const [breachCount, setBreachCount] = useState(0);
+
+  // Looked up in the server's offline breach corpus once typing pauses
+  useEffect(() => {
+    setBreachCount(0);
+    if (!password) return;
+    let cancelled = false;
+    const timer = setTimeout(() => {
+      api
+        .post(`${ENDPOINTS.SECRETS}/breach-check`, { value: password })
+        .then((response) => {
+          if (!cancelled) setBreachCount(response.data.count);
+        })
+        .catch(() => {});
+    }, 600);
+    return () => {
+      cancelled = true;
+      clearTimeout(timer);
+    };
+  }, [password]);
+
   const strength = useMemo(() => {
     if (!password) return 0;
+    // A known breached password is weak however it looks
+    if (breachCount > 0) return 1;
     let score = 0;
     if (password.length > 8) score += 1;
     if (password.length > 12) score += 1;
@@ -10,7 +35,7 @@ const PasswordStrengthMeter = ({ password }) => {
     if (/[0-9]/.test(password)) score += 1;
     if (/[^A-Za-z0-9]/.test(password)) score += 1;
     return score;
-  }, [password]);
+  }, [password, breachCount]);
 
   const getStrengthLabel = () => {
     switch (strength) {
@@ -66,6 +91,11 @@ const PasswordStrengthMeter = ({ password }) => {
           />
         ))}
       </div>
+      {breachCount > 0 && (
+        <p className="mt-1 text-xs font-medium text-red-600 dark:text-red-400">
+          Found {breachCount.toLocaleString()} times in known data breaches
+        </p>
+      )}
     </div>
   );
 };
@@ -1,4 +1,5 @@
 import React, { useMemo } from "react";
+import { useQuery } from "@tanstack/react-query";
 import { motion } from "framer-motion";
 import {
   Shield,
@@ -8,11 +9,25 @@ import {
   RefreshCw,
   CheckCircle,
 } from "lucide-react";
+import api from "../utils/api";
+import { ENDPOINTS } from "../constants/api";
 
 const VaultHealth = ({ secrets = [], variant = "full" }) => {
+  // Server-side scan against the offline breach corpus; decrypts the whole vault, so reused for a while
+  const { data: breachScan } = useQuery({
+    queryKey: ["breach-scan"],
+    queryFn: async () => {
+      const response = await api.get(`${ENDPOINTS.SECRETS}/breach-scan`);
+      return response.data;
+    },
+    enabled: secrets.length > 0,
+    staleTime: 5 * 60 * 1000,
+  });
+  const breachAvailable = !!breachScan?.available;
+
   const stats = useMemo(() => {
     if (!secrets.length)
-      return { score: 0, weak: 0, reused: 0, old: 0, total: 0 };
+      return { score: 0, weak: 0, reused: 0, old: 0, breached: 0, total: 0 };
 
     let weak = 0;
     let reused = 0;
@@ -28,12 +43,13 @@ const VaultHealth = ({ secrets = [], variant = "full" }) => {
       if (daysOld > 90) old++;
     });
 
+    const breached = breachScan?.breached?.length || 0;
     const total = secrets.length;
-    // Score calculation: Start at 100, deduct 5 for each old password
-    const score = Math.max(0, 100 - old * 5);
+    // Score calculation: Start at 100, deduct 5 for each old password and 10 for each breached one
+    const score = Math.max(0, 100 - old * 5 - breached * 10);
 
-    return { score, weak, reused, old, total };
-  }, [secrets]);
+    return { score, weak, reused, old, breached, total };
+  }, [secrets, breachScan]);
 
   // Variant: "full" (Dashboard Hero)
   if (variant === "full") {
@@ -154,24 +170,24 @@ const VaultHealth = ({ secrets = [], variant = "full" }) => {
               </div>
             </div>
 
-            {/* Placeholder for future stats */}
             <div className="bg-gradient-to-br from-red-50 to-pink-50 dark:from-red-900/40 dark:to-pink-900/40 rounded-2xl p-4 border border-red-200 dark:border-red-500/40 backdrop-blur-sm">
               <div className="flex items-center gap-3 mb-2">
                 <div className="p-2 bg-gradient-to-br from-red-500 to-pink-500 rounded-lg text-white shadow-lg shadow-red-500/20">
                   <AlertTriangle className="h-5 w-5" />
                 </div>
                 <span className="text-gray-600 dark:text-gray-300 text-sm font-medium">
-                  Weak
+                  Breached
                 </span>
               </div>
               <div className="text-2xl font-bold text-red-700 dark:text-red-300">
-                -
+                {breachAvailable ? stats.breached : "-"}
               </div>
               <div className="text-xs text-gray-500 dark:text-gray-400 mt-1">
-                Password strength
+                Known data breaches
               </div>
             </div>
 
+            {/* Placeholder for future stats */}
             <div className="bg-gradient-to-br from-orange-50 to-yellow-50 dark:from-orange-900/40 dark:to-yellow-900/40 rounded-2xl p-4 border border-orange-200 dark:border-orange-500/40 backdrop-blur-sm">
               <div className="flex items-center gap-3 mb-2">
                 <div className="p-2 bg-gradient-to-br from-orange-500 to-yellow-500 rounded-lg text-white shadow-lg shadow-orange-500/20">
@@ -263,14 +279,18 @@ const VaultHealth = ({ secrets = [], variant = "full" }) => {
 
         <div className="w-px h-8 bg-gray-200 dark:bg-white/10 hidden sm:block"></div>
 
-        <div className="flex items-center gap-2 opacity-50">
+        <div
+          className={`flex items-center gap-2 ${
+            breachAvailable ? "" : "opacity-50"
+          }`}
+        >
           <AlertTriangle className="h-4 w-4 text-red-500" />
           <div className="flex flex-col">
             <span className="text-xs text-gray-500 dark:text-gray-400">
-              Weak
+              Breached
             </span>
             <span className="text-sm font-bold text-gray-900 dark:text-white">
-              -
+              {breachAvailable ? stats.breached : "-"}
             </span>
           </div>
         </div>
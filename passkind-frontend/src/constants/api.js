@@ -3,6 +3,8 @@ export const API_BASE_URL =
 
 export const ENDPOINTS = {
   LOGIN: "/auth/login",
+  REFRESH: "/auth/refresh",
+  LOGOUT: "/auth/logout",
   REGISTER: "/auth/register",
   VERIFY_OTP: "/auth/verify-email",
   RESEND_OTP: "/auth/resend-otp",
@@ -32,7 +32,7 @@ const Dashboard = () => {
   const { data: secrets = [], isLoading } = useQuery({
     queryKey: ["secrets"],
     queryFn: async () => {
-      const response = await api.get(ENDPOINTS.SECRETS);
+      const response = await api.get(`${ENDPOINTS.SECRETS}/summary`);
       return response.data;
     },
   });
@@ -49,7 +49,7 @@ const Favorites = () => {
   } = useQuery({
     queryKey: ["secrets"],
     queryFn: async () => {
-      const response = await api.get(ENDPOINTS.SECRETS);
+      const response = await api.get(`${ENDPOINTS.SECRETS}/summary`);
       return response.data;
     },
   });
@@ -159,6 +159,7 @@ const Favorites = () => {
       try {
         await api.delete(`${ENDPOINTS.SECRETS}/${id}`);
         queryClient.invalidateQueries(["secrets"]);
+        queryClient.invalidateQueries(["breach-scan"]);
       } catch (err) {
         console.error("Failed to delete secret", err);
       }
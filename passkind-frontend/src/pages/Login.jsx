@@ -94,7 +94,7 @@ const Login = () => {
       });
 
       const token = response.data.accessToken;
-      login(null, token);
+      login(null, token, response.data.refreshToken);
 
       const userResponse = await api.get(`${ENDPOINTS.USERS}/me`);
       updateUser(userResponse.data);
@@ -50,6 +50,7 @@ const Profile = () => {
   const [isExportModalOpen, setIsExportModalOpen] = useState(false);
   const [exportPassword, setExportPassword] = useState("");
   const [isExporting, setIsExporting] = useState(false);
+  const [exportProgress, setExportProgress] = useState(null);
 
   const {
     data: user,
@@ -378,11 +379,24 @@ const Profile = () => {
                     e.preventDefault();
                     setIsExporting(true);
                     try {
-                      const response = await api.post(
-                        `${ENDPOINTS.SECRETS}/export/excel`,
-                        { password: exportPassword },
-                        { responseType: "blob" }
-                      );
+                      // Runs as a background job so large vaults do not hit request timeouts
+                      const jobUrl = `${ENDPOINTS.SECRETS}/export/jobs`;
+                      let { data: job } = await api.post(jobUrl, {
+                        format: "excel",
+                        password: exportPassword,
+                      });
+                      while (job.status === "QUEUED" || job.status === "RUNNING") {
+                        setExportProgress(job.total ? `${job.processed}/${job.total}` : null);
+                        await new Promise((resolve) => setTimeout(resolve, 1000));
+                        ({ data: job } = await api.get(`${jobUrl}/${job.id}`));
+                      }
+                      if (job.status !== "COMPLETED") {
+                        throw new Error("Export job failed");
+                      }
+                      const response = await api.get(`${jobUrl}/${job.id}/file`, {
+                        responseType: "blob",
+                      });
+                      api.delete(`${jobUrl}/${job.id}`).catch(() => {});
 
                       const blob = new Blob([response.data], {
                         type: "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
@@ -415,6 +429,7 @@ const Profile = () => {
                       }
                     } finally {
                       setIsExporting(false);
+                      setExportProgress(null);
                     }
                   }}
                 >
@@ -452,7 +467,7 @@ const Profile = () => {
                       {isExporting ? (
                         <>
                           <div className="w-4 h-4 border-2 border-white/30 border-t-white rounded-full animate-spin mr-2" />
-                          Exporting...
+                          Exporting{exportProgress ? ` ${exportProgress}` : "..."}
                         </>
                       ) : (
                         <>
@@ -948,11 +963,15 @@ const ChangePasswordModal = ({ onClose }) => {
     }
     setLoading(true);
     try {
-      await api.post(ENDPOINTS.CHANGE_PASSWORD, {
+      const { data } = await api.post(ENDPOINTS.CHANGE_PASSWORD, {
         currentPassword,
         newPassword,
         confirmNewPassword,
       });
+      // Older tokens were revoked with the old password
+      if (data?.accessToken) {
+        useAuthStore.getState().setTokens(data.accessToken, data.refreshToken);
+      }
       toast.success("Password changed successfully");
       onClose();
     } catch (err) {
@@ -58,7 +58,7 @@ const Register = () => {
     },
     onSuccess: async (data) => {
       const token = data.accessToken;
-      login(null, token);
+      login(null, token, data.refreshToken);
 
       try {
         const userResponse = await api.get(`${ENDPOINTS.USERS}/me`);
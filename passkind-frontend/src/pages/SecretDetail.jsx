@@ -54,6 +54,7 @@ const SecretDetail = () => {
     },
     onSuccess: () => {
       queryClient.invalidateQueries(["secrets"]);
+      queryClient.invalidateQueries(["breach-scan"]);
       navigate("/secrets");
     },
     onError: (err) => {
@@ -100,8 +100,14 @@ const SecretForm = () => {
         return api.post(ENDPOINTS.SECRETS, data);
       }
     },
-    onSuccess: () => {
+    onSuccess: (response) => {
       queryClient.invalidateQueries(["secrets"]);
+      queryClient.invalidateQueries(["breach-scan"]);
+      if (response.data?.breachCount > 0) {
+        toast("Saved, but this value appears in known data breaches", {
+          icon: "⚠️",
+        });
+      }
       navigate("/secrets");
     },
     onError: (err) => {
@@ -46,7 +46,7 @@ const Secrets = () => {
   } = useQuery({
     queryKey: ["secrets"],
     queryFn: async () => {
-      const response = await api.get(ENDPOINTS.SECRETS);
+      const response = await api.get(`${ENDPOINTS.SECRETS}/summary`);
       return response.data;
     },
   });
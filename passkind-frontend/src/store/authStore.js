@@ -1,14 +1,40 @@
 import { create } from "zustand";
 import { persist } from "zustand/middleware";
+import { API_BASE_URL, ENDPOINTS } from "../constants/api";
 
 const useAuthStore = create(
   persist(
     (set, get) => ({
       user: null,
       token: null,
+      refreshToken: null,
       isAuthenticated: false,
-      login: (user, token) => set({ user, token, isAuthenticated: true }),
-      logout: () => set({ user: null, token: null, isAuthenticated: false }),
+      // refreshToken is only passed on sign-in; later calls keep the current one
+      login: (user, token, refreshToken) =>
+        set((state) => ({
+          user,
+          token,
+          refreshToken: refreshToken ?? state.refreshToken,
+          isAuthenticated: true,
+        })),
+      setTokens: (token, refreshToken) => set({ token, refreshToken }),
+      logout: () => {
+        const { token, refreshToken } = get();
+        if (token || refreshToken) {
+          // Revoke the session server-side: the access token (Authorization header) goes on the denylist and the
+          // refresh token's family is revoked. Plain fetch so this store does not depend on the api client
+          fetch(`${API_BASE_URL}${ENDPOINTS.LOGOUT}`, {
+            method: "POST",
+            headers: {
+              "Content-Type": "application/json",
+              ...(token ? { Authorization: `Bearer ${token}` } : {}),
+            },
+            body: JSON.stringify({ refreshToken }),
+            keepalive: true,
+          }).catch(() => {});
+        }
+        set({ user: null, token: null, refreshToken: null, isAuthenticated: false });
+      },
       updateUser: (user) => set({ user }),
       checkAuth: () => {
         const { token } = get();
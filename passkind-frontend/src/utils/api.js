@@ -1,5 +1,5 @@
 import axios from "axios";
-import { API_BASE_URL } from "../constants/api";
+import { API_BASE_URL, ENDPOINTS } from "../constants/api";
 import useAuthStore from "../store/authStore";
 
 const api = axios.create({
@@ -22,14 +22,50 @@ api.interceptors.request.use(
   }
 );
 
+// One refresh at a time: requests that fail together wait for the same new token, since a refresh token
+// can only be used once
+let refreshing = null;
+
+const refreshAccessToken = () => {
+  if (!refreshing) {
+    const { refreshToken } = useAuthStore.getState();
+    refreshing = axios
+      .post(`${API_BASE_URL}${ENDPOINTS.REFRESH}`, { refreshToken })
+      .then(({ data }) => {
+        useAuthStore.getState().setTokens(data.accessToken, data.refreshToken);
+        return data.accessToken;
+      })
+      .finally(() => {
+        refreshing = null;
+      });
+  }
+  return refreshing;
+};
+
 api.interceptors.response.use(
   (response) => response,
-  (error) => {
-    // Handle authentication errors (401 Unauthorized, 403 Forbidden)
+  async (error) => {
+    const original = error.config;
+    // An expired access token is renewed once and the request retried
     if (
-      error.response &&
-      (error.response.status === 401 || error.response.status === 403)
+      error.response?.status === 401 &&
+      original &&
+      !original._retried &&
+      !original.url?.startsWith("/auth/") &&
+      useAuthStore.getState().refreshToken
     ) {
+      original._retried = true;
+      try {
+        const token = await refreshAccessToken();
+        original.headers.Authorization = `Bearer ${token}`;
+        return api(original);
+      } catch {
+        // Fall through to sign-out below
+      }
+    }
+    // Handle authentication errors (401 Unauthorized). A 403 means the session is fine but this
+    // resource is not allowed, so it is left to the caller
+    if (error.response && error.response.status === 401) {
       // Clear auth state
       useAuthStore.getState().logout();
 